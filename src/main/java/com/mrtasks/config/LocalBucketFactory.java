@@ -0,0 +1,21 @@
+package com.mrtasks.config;
+
+import com.mrtasks.model.enums.RateLimitAction;
+import io.github.bucket4j.Bucket;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Default backend: buckets live only in this instance's memory.
+ */
+@Component
+@ConditionalOnProperty(name = "mrtasks.rate-limit.backend", havingValue = "memory", matchIfMissing = true)
+public class LocalBucketFactory implements RateLimitBucketFactory {
+
+    @Override
+    public Bucket create(RateLimitAction action, String username) {
+        return Bucket.builder()
+                .addLimit(RateLimitBucketFactory.bandwidthFor(action))
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.mrtasks.config;
+
+import com.mrtasks.model.enums.RateLimitAction;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.jdbc.PrimaryKeyMapper;
+import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+import io.github.bucket4j.distributed.proxy.optimization.Optimization;
+import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+import io.github.bucket4j.postgresql.Bucket4jPostgreSQL;
+import io.github.bucket4j.postgresql.PostgreSQLSelectForUpdateBasedProxyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Cluster-wide backend: bucket state is kept in the {@code rate_limit_buckets} table, so every instance
+ * behind the load balancer draws from the same quota.
+ * <p>
+ * The bucket proxies are cached by {@link RateLimitBucketStore}, and each one may consume up to a tenth of
+ * its capacity locally before synchronising, so most checks do not touch the database.
+ */
+@Component
+@ConditionalOnProperty(name = "mrtasks.rate-limit.backend", havingValue = "postgres")
+public class PostgresBucketFactory implements RateLimitBucketFactory {
+
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    private final PostgreSQLSelectForUpdateBasedProxyManager<String> proxyManager;
+    private final Duration syncInterval;
+
+    public PostgresBucketFactory(DataSource dataSource,
+                                 @Value("${mrtasks.rate-limit.sync-interval:2s}") Duration syncInterval) {
+        this.proxyManager = Bucket4jPostgreSQL.selectForUpdateBasedBuilder(dataSource)
+                .primaryKeyMapper(PrimaryKeyMapper.STRING)
+                .table("rate_limit_buckets")
+                .idColumn("id")
+                .stateColumn("state")
+                .expiresAtColumn("expires_at")
+                .expirationAfterWrite(ExpirationAfterWriteStrategy.basedOnTimeForRefillingBucketUpToMax(Duration.ofMinutes(5)))
+                .build();
+        this.syncInterval = syncInterval;
+    }
+
+    @Override
+    public Bucket create(RateLimitAction action, String username) {
+        return proxyManager.builder()
+                .withOptimization(optimizationFor(action))
+                .build(action.getLabel() + ":" + username, () -> RateLimitBucketFactory.configurationFor(action));
+    }
+
+    @Scheduled(fixedRate = 10 * 60 * 1000) // Every 10 minutes
+    public void removeExpiredBuckets() {
+        int removed;
+        do {
+            removed = proxyManager.removeExpired(CLEANUP_BATCH_SIZE);
+        } while (removed == CLEANUP_BATCH_SIZE);
+    }
+
+    private Optimization optimizationFor(RateLimitAction action) {
+        long unsynchronizedTokens = action.getCapacityPerHour() / 10;
+        if (unsynchronizedTokens == 0) {
+            // Quotas this small cannot afford any local overdraft; only merge concurrent requests
+            return Optimizations.batching();
+        }
+        return Optimizations.delaying(new DelayParameters(unsynchronizedTokens, syncInterval));
+    }
+}
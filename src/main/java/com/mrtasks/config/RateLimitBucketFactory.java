@@ -0,0 +1,32 @@
+package com.mrtasks.config;
+
+import com.mrtasks.model.enums.RateLimitAction;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+
+import java.time.Duration;
+
+/**
+ * Creates the bucket for one user and action. Selected with {@code mrtasks.rate-limit.backend}.
+ */
+public interface RateLimitBucketFactory {
+
+    Duration REFILL_PERIOD = Duration.ofHours(1);
+
+    Bucket create(RateLimitAction action, String username);
+
+    static Bandwidth bandwidthFor(RateLimitAction action) {
+        long capacity = action.getCapacityPerHour();
+        return Bandwidth.builder()
+                .capacity(capacity)
+                .refillIntervally(capacity, REFILL_PERIOD)
+                .build();
+    }
+
+    static BucketConfiguration configurationFor(RateLimitAction action) {
+        return BucketConfiguration.builder()
+                .addLimit(bandwidthFor(action))
+                .build();
+    }
+}
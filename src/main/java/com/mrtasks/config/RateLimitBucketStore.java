@@ -0,0 +1,116 @@
+package com.mrtasks.config;
+
+import com.mrtasks.model.enums.RateLimitAction;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.distributed.BucketProxy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds one bucket per user for each {@link RateLimitAction}, in a separate map per action.
+ * <p>
+ * A bucket that has not been touched for a whole refill period is full again, so dropping it
+ * is indistinguishable from keeping it; those are swept periodically. If a map still grows past
+ * {@link #MAX_BUCKETS_PER_ACTION}, the least recently used buckets are dropped as well.
+ * With the Postgres backend these are local proxies that may hold consumption not yet synchronised
+ * to the database, so a dropped proxy is synchronised first.
+ */
+@Component
+@Log4j2
+public class RateLimitBucketStore {
+
+    private static final Duration REFILL_PERIOD = RateLimitBucketFactory.REFILL_PERIOD;
+    private static final int MAX_BUCKETS_PER_ACTION = 50_000;
+
+    private static final class Entry {
+        private final Bucket bucket;
+        private volatile long lastAccess;
+
+        private Entry(Bucket bucket, long now) {
+            this.bucket = bucket;
+            this.lastAccess = now;
+        }
+    }
+
+    private static final class Shard {
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicBoolean trimming = new AtomicBoolean();
+    }
+
+    private final Map<RateLimitAction, Shard> shards = new EnumMap<>(RateLimitAction.class);
+    private final RateLimitBucketFactory bucketFactory;
+
+    public RateLimitBucketStore(RateLimitBucketFactory bucketFactory) {
+        this.bucketFactory = bucketFactory;
+        for (RateLimitAction action : RateLimitAction.values()) {
+            shards.put(action, new Shard());
+        }
+    }
+
+    public Bucket getBucket(RateLimitAction action, String username) {
+        Shard shard = shards.get(action);
+        long now = System.currentTimeMillis();
+        Entry entry = shard.entries.get(username);
+        if (entry == null) {
+            entry = shard.entries.computeIfAbsent(username, k -> new Entry(bucketFactory.create(action, username), now));
+            if (shard.entries.size() > MAX_BUCKETS_PER_ACTION) {
+                trim(shard, now);
+            }
+        } else {
+            entry.lastAccess = now;
+        }
+        return entry.bucket;
+    }
+
+    @Scheduled(fixedRate = 10 * 60 * 1000) // Every 10 minutes
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        shards.values().forEach(shard -> trim(shard, now));
+    }
+
+    private void trim(Shard shard, long now) {
+        // Only one thread trims a shard at a time; the others carry on without waiting
+        if (!shard.trimming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long idleBefore = now - REFILL_PERIOD.toMillis();
+            shard.entries.forEach((username, entry) -> {
+                if (entry.lastAccess < idleBefore) {
+                    drop(shard, username, entry);
+                }
+            });
+
+            int excess = shard.entries.size() - MAX_BUCKETS_PER_ACTION;
+            if (excess > 0) {
+                shard.entries.entrySet().stream()
+                        .sorted(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                        .limit(excess + MAX_BUCKETS_PER_ACTION / 10)
+                        .toList()
+                        .forEach(e -> drop(shard, e.getKey(), e.getValue()));
+            }
+        } finally {
+            shard.trimming.set(false);
+        }
+    }
+
+    private static void drop(Shard shard, String username, Entry entry) {
+        if (!shard.entries.remove(username, entry) || !(entry.bucket instanceof BucketProxy proxy)) {
+            return;
+        }
+        try {
+            // Writes only when tokens were consumed since the last synchronisation
+            proxy.getOptimizationController().syncByCondition(1, Duration.ZERO);
+        } catch (RuntimeException e) {
+            log.warn("Failed to synchronise rate limit bucket for {}: {}", username, e.getMessage());
+        }
+    }
+}
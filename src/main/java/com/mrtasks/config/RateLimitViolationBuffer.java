@@ -0,0 +1,59 @@
+package com.mrtasks.config;
+
+import com.mrtasks.model.RateLimitViolation;
+import com.mrtasks.model.enums.RateLimitAction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free ring of recent rate limit violations. When full, the newest event overwrites the oldest.
+ * <p>
+ * {@link #drain()} takes each slot with an atomic swap, so every event is returned by exactly one drain
+ * (or overwritten first); nothing recorded while a drain is running is lost.
+ */
+class RateLimitViolationBuffer {
+
+    private final AtomicReferenceArray<RateLimitViolation> slots;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    RateLimitViolationBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    void record(String username, String ipAddress, RateLimitAction action) {
+        long seq = sequence.getAndIncrement();
+        slots.set((int) (seq & mask), new RateLimitViolation(seq, System.currentTimeMillis(), username, ipAddress, action));
+    }
+
+    /**
+     * Records drained events again, keeping their timestamps, for a batch that could not be delivered. Like any
+     * other event they may be overwritten before the next drain if the ring fills up.
+     */
+    void restore(List<RateLimitViolation> events) {
+        for (RateLimitViolation event : events) {
+            long seq = sequence.getAndIncrement();
+            slots.set((int) (seq & mask), new RateLimitViolation(seq, event.timestamp(), event.username(), event.ipAddress(), event.action()));
+        }
+    }
+
+    List<RateLimitViolation> drain() {
+        List<RateLimitViolation> drained = new ArrayList<>();
+        for (int i = 0; i < slots.length(); i++) {
+            RateLimitViolation event = slots.getAndSet(i, null);
+            if (event != null) {
+                drained.add(event);
+            }
+        }
+        drained.sort(Comparator.comparingLong(RateLimitViolation::sequence));
+        return drained;
+    }
+}
@@ -26,6 +26,7 @@ import org.springframework.security.core.session.SessionRegistry;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
@@ -108,7 +109,7 @@ public class AdminController {
             newProfile.setUser(user);
             return newProfile;
         });
-        UserSubscription subscription = userSubscriptionRepository.findByUser(user)
+        UserSubscription subscription = premiumService.getSubscription(user)
                 .orElse(new UserSubscription());
 
         model.addAttribute("user", dtoMapper.toUserDto(user, profile, subscription));
@@ -159,7 +160,7 @@ public class AdminController {
             logUpdate(existingProfile, "Profile updated", principal);
             userProfileRepository.save(existingProfile);
 
-            UserSubscription subscription = userSubscriptionRepository.findByUser(user)
+            UserSubscription subscription = premiumService.getSubscription(user)
                     .orElse(new UserSubscription());
             return ResponseEntity.ok(dtoMapper.toUserDto(user, existingProfile, subscription));
         } catch (IllegalArgumentException e) {
@@ -193,7 +194,7 @@ public class AdminController {
             logUpdate(profile, "Upgraded to Premium for " + months + " months", principal);
             userProfileRepository.save(profile);
 
-            UserSubscription subscription = userSubscriptionRepository.findByUser(user)
+            UserSubscription subscription = premiumService.getSubscription(user)
                     .orElse(new UserSubscription());
             return ResponseEntity.ok(dtoMapper.toUserDto(user, profile, subscription));
         } catch (IllegalArgumentException e) {
@@ -222,7 +223,7 @@ public class AdminController {
             logUpdate(profile, "Downgraded from Premium", principal);
             userProfileRepository.save(profile);
 
-            UserSubscription subscription = userSubscriptionRepository.findByUser(user)
+            UserSubscription subscription = premiumService.getSubscription(user)
                     .orElse(new UserSubscription());
             return ResponseEntity.ok(dtoMapper.toUserDto(user, profile, subscription));
         } catch (IllegalArgumentException e) {
@@ -233,6 +234,7 @@ public class AdminController {
         }
     }
 
+    @Transactional
     @PostMapping("/reset-password")
     @ResponseBody
     public ResponseEntity<?> resetPassword(
@@ -260,7 +262,7 @@ public class AdminController {
             logUpdate(profile, "Reset password email sent to " + profile.getEmail(), principal);
             userProfileRepository.save(profile);
 
-            UserSubscription subscription = userSubscriptionRepository.findByUser(user)
+            UserSubscription subscription = premiumService.getSubscription(user)
                     .orElse(new UserSubscription());
             return ResponseEntity.ok(dtoMapper.toUserDto(user, profile, subscription));
         } catch (IllegalArgumentException e) {
@@ -338,7 +340,7 @@ public class AdminController {
                        });
            }
 
-            UserSubscription subscription = userSubscriptionRepository.findByUser(user)
+            UserSubscription subscription = premiumService.getSubscription(user)
                     .orElse(new UserSubscription());
             return ResponseEntity.ok(dtoMapper.toUserDto(user, profile, subscription));
         } catch (IllegalArgumentException e) {
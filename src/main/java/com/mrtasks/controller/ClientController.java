@@ -3,14 +3,13 @@ package com.mrtasks.controller;
 import com.mrtasks.config.RateLimitConfig;
 import com.mrtasks.model.Client;
 import com.mrtasks.model.User;
-import com.mrtasks.model.UserProfile;
 import com.mrtasks.model.dto.ClientDto;
 import com.mrtasks.model.dto.PageDto;
 import com.mrtasks.model.dto.mapper.DtoMapper;
 import com.mrtasks.repository.ClientRepository;
 import com.mrtasks.repository.TaskRepository;
-import com.mrtasks.repository.UserProfileRepository;
-import com.mrtasks.repository.UserRepository;
+import com.mrtasks.service.auth.CurrentUser;
+import com.mrtasks.service.cache.ClientNameIndex;
 import com.mrtasks.utils.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -33,12 +32,13 @@ import java.util.stream.Collectors;
 public class ClientController {
 
     private final ClientRepository clientRepository;
-    private final UserRepository userRepository;
+    private final ClientNameIndex clientNameIndex;
     private final TaskRepository taskRepository;
     private final RateLimitConfig rateLimitConfig;
-    private final UserProfileRepository userProfileRepository;
     private final DtoMapper dtoMapper;
 
+    private static final int MAX_SUGGESTIONS = 20;
+
     // Email regex pattern
     private static final Pattern EMAIL_PATTERN = Pattern.compile(
             "^[A-Za-z0-9+_.-]+@(.+)$"
@@ -70,12 +70,13 @@ public class ClientController {
             @RequestParam(defaultValue = "10") int size,
             Model model,
             Authentication auth,
+            CurrentUser currentUser,
             HttpServletRequest request) {
         // Validate page and size
         if (page < 0) {
             page = 0;
         }
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
 
         boolean canSearchClients = rateLimitConfig.canSearchClients(auth.getName(), RequestUtils.getClientIp(request));
         PageDto<ClientDto> clientPageDto = new PageDto<>();
@@ -115,13 +116,14 @@ public class ClientController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String search,
             Authentication auth,
+            CurrentUser currentUser,
             HttpServletRequest request) {
         boolean canSearchClients = rateLimitConfig.canSearchClients(auth.getName(), RequestUtils.getClientIp(request));
         if (!canSearchClients) {
             return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
                     .body("error.rate.limit.client.search");
         }
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
 
         // Validate page and size
         if (page < 0) {
@@ -149,11 +151,28 @@ public class ClientController {
         return ResponseEntity.ok(clientPageDto);
     }
 
+    // Typeahead suggestions from the in-memory name index; cheap enough not to draw on the client search limit,
+    // so they have a generous limit of their own
+    @GetMapping("/suggest")
+    @ResponseBody
+    public ResponseEntity<?> suggestClients(
+            @RequestParam(defaultValue = "") String q,
+            @RequestParam(defaultValue = "10") int limit,
+            Authentication auth,
+            CurrentUser currentUser,
+            HttpServletRequest request) {
+        if (!rateLimitConfig.canSuggestClients(auth.getName(), RequestUtils.getClientIp(request))) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(clientNameIndex.suggest(currentUser.getUser(), q, Math.max(1, Math.min(limit, MAX_SUGGESTIONS))));
+    }
+
     @PostMapping
     @ResponseBody
     public ResponseEntity<?> addClient(
             @ModelAttribute ClientDto clientDto,
             Authentication auth,
+            CurrentUser currentUser,
             HttpServletRequest request) {
         // Rate limiting
         boolean canCreateClient = rateLimitConfig.canCreateClient(auth.getName(), RequestUtils.getClientIp(request));
@@ -168,10 +187,8 @@ public class ClientController {
                     .body(validationError);
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        boolean isEmailVerified = userProfileRepository.findByUser(user)
-                .map(UserProfile::isEmailVerified)
-                .orElse(false);
+        User user = currentUser.getUser();
+        boolean isEmailVerified = currentUser.getProfile().isEmailVerified();
 
         // Check email verification and client limit
         if (!isEmailVerified) {
@@ -198,8 +215,8 @@ public class ClientController {
     @ResponseBody
     public ResponseEntity<ClientDto> getClient(
             @PathVariable Long id,
-            Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+            CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Client client = clientRepository.findByIdAndUser(id, user);
         if (client == null) {
             return ResponseEntity.notFound().build();
@@ -212,14 +229,14 @@ public class ClientController {
     public ResponseEntity<?> updateClient(
             @PathVariable Long id,
             @ModelAttribute ClientDto clientDto,
-            Authentication auth) {
+            CurrentUser currentUser) {
         String validationError = validateClientDto(clientDto);
         if (validationError != null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(validationError);
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
         Client existingClient = clientRepository.findByIdAndUser(id, user);
         if (existingClient == null) {
             return ResponseEntity.notFound().build();
@@ -237,8 +254,8 @@ public class ClientController {
     @ResponseBody
     public ResponseEntity<Void> deleteClient(
             @PathVariable Long id,
-            Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+            CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Client client = clientRepository.findByIdAndUser(id, user);
         if (client == null) {
             return ResponseEntity.notFound().build();
@@ -255,8 +272,8 @@ public class ClientController {
     }
 
     @GetMapping("/clients/{id}")
-    public ResponseEntity<Client> getClientById(@PathVariable Long id, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<Client> getClientById(@PathVariable Long id, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Client client = clientRepository.findByIdAndUser(id, user);
 
         if (client == null) {
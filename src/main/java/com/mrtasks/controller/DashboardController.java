@@ -5,15 +5,13 @@ import com.mrtasks.exception.RateLimitExceededException;
 import com.mrtasks.model.Client;
 import com.mrtasks.model.Task;
 import com.mrtasks.model.User;
-import com.mrtasks.model.UserProfile;
 import com.mrtasks.model.dto.ClientDto;
 import com.mrtasks.model.dto.TaskDto;
 import com.mrtasks.model.dto.mapper.DtoMapper;
 import com.mrtasks.repository.ClientRepository;
 import com.mrtasks.repository.TaskRepository;
-import com.mrtasks.repository.UserProfileRepository;
-import com.mrtasks.repository.UserRepository;
 import com.mrtasks.service.TaskService;
+import com.mrtasks.service.auth.CurrentUser;
 import com.mrtasks.utils.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -32,16 +30,14 @@ import java.util.stream.Collectors;
 public class DashboardController {
 
     private final TaskService taskService;
-    private final UserRepository userRepository;
     private final ClientRepository clientRepository;
     private final TaskRepository taskRepository;
     private final RateLimitConfig rateLimitConfig;
-    private final UserProfileRepository userProfileRepository;
     private final DtoMapper dtoMapper;
 
     @GetMapping("/dashboard")
-    public String listTasks(Model model, Authentication auth, HttpServletRequest request) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public String listTasks(Model model, Authentication auth, CurrentUser currentUser, HttpServletRequest request) {
+        User user = currentUser.getUser();
 
         // Rate limiting
         boolean canAccess = rateLimitConfig.canPerformDashboardAction(auth.getName(), RequestUtils.getClientIp(request));
@@ -65,35 +61,25 @@ public class DashboardController {
             rateLimitMessage = "limit.error.rate.list";
         }
 
-        UserProfile userProfile = userProfileRepository.findByUser(user)
-                .orElseGet(() -> {
-                    UserProfile newProfile = new UserProfile();
-                    newProfile.setUser(user);
-                    newProfile.setLanguage("en");
-                    return userProfileRepository.save(newProfile);
-                });
-
         model.addAttribute("tasks", tasks);
         model.addAttribute("clients", clients);
         model.addAttribute("newTask", new TaskDto());
         model.addAttribute("totalTaskCount", taskService.getTasksForUser(user).size());
         model.addAttribute("rateLimitMessage", rateLimitMessage);
-        model.addAttribute("userProfile", dtoMapper.toProfileDto(userProfile));
+        model.addAttribute("userProfile", dtoMapper.toProfileDto(currentUser.getProfile()));
 
         return "dashboard";
     }
 
     @PostMapping("/dashboard")
     @ResponseBody
-    public ResponseEntity<?> addTask(@ModelAttribute TaskDto taskDto, Authentication auth, HttpServletRequest request) {
+    public ResponseEntity<?> addTask(@ModelAttribute TaskDto taskDto, Authentication auth, CurrentUser currentUser, HttpServletRequest request) {
         // Rate limiting
         if (!rateLimitConfig.canCreateTask(auth.getName(), RequestUtils.getClientIp(request))) {
             throw new RateLimitExceededException("limit.error.rate.task");
         }
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        boolean isEmailVerified = userProfileRepository.findByUser(user)
-                .map(UserProfile::isEmailVerified)
-                .orElse(false);
+        User user = currentUser.getUser();
+        boolean isEmailVerified = currentUser.getProfile().isEmailVerified();
 
         // Check email verification and task limit
         if (!isEmailVerified) {
@@ -112,7 +98,7 @@ public class DashboardController {
         } else {
             task.setClient(null);
         }
-        task.setOrderIndex(taskService.getMaxOrderIndex(user, Task.TaskStatus.valueOf(taskDto.getStatus())) + 1);
+        task.setOrderIndex(taskService.getNextOrderIndex(user, Task.TaskStatus.valueOf(taskDto.getStatus())));
         dtoMapper.toTask(taskDto, task);
         taskService.saveTask(task);
         return ResponseEntity.ok(dtoMapper.toTaskDto(task));
@@ -120,8 +106,8 @@ public class DashboardController {
 
     @GetMapping("/dashboard/task/{id}")
     @ResponseBody
-    public ResponseEntity<TaskDto> getTask(@PathVariable Long id, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<TaskDto> getTask(@PathVariable Long id, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task task = taskService.getTaskByIdAndUser(id, user);
         if (task == null) {
             return ResponseEntity.notFound().build();
@@ -131,8 +117,8 @@ public class DashboardController {
 
     @PutMapping("/dashboard/task/{id}")
     @ResponseBody
-    public ResponseEntity<TaskDto> updateTask(@PathVariable Long id, @ModelAttribute TaskDto taskDto, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<TaskDto> updateTask(@PathVariable Long id, @ModelAttribute TaskDto taskDto, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task existingTask = taskService.getTaskByIdAndUser(id, user);
         if (existingTask == null) {
             return ResponseEntity.notFound().build();
@@ -152,8 +138,8 @@ public class DashboardController {
 
     @DeleteMapping("/dashboard/task/{id}")
     @ResponseBody
-    public ResponseEntity<Void> deleteTask(@PathVariable Long id, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<Void> deleteTask(@PathVariable Long id, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task task = taskService.getTaskByIdAndUser(id, user);
         if (task == null) {
             return ResponseEntity.notFound().build();
@@ -164,8 +150,8 @@ public class DashboardController {
 
     @PostMapping("/dashboard/task/{id}/hide")
     @ResponseBody
-    public ResponseEntity<String> hideTask(@PathVariable Long id, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<String> hideTask(@PathVariable Long id, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task task = taskService.getTaskByIdAndUser(id, user);
         if (task == null) {
             return ResponseEntity.status(403).body("error.task.notfound");
@@ -177,8 +163,8 @@ public class DashboardController {
 
     @PostMapping("/dashboard/task/{id}/unhide")
     @ResponseBody
-    public ResponseEntity<String> unhideTask(@PathVariable Long id, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<String> unhideTask(@PathVariable Long id, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task task = taskService.getTaskByIdAndUser(id, user);
         if (task == null) {
             return ResponseEntity.status(403).body("error.task.notfound");
@@ -190,8 +176,8 @@ public class DashboardController {
 
     @PostMapping("/dashboard/color/{id}")
     @ResponseBody
-    public ResponseEntity<String> changeTaskColor(@PathVariable Long id, @RequestParam("color") String color, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+    public ResponseEntity<String> changeTaskColor(@PathVariable Long id, @RequestParam("color") String color, CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task task = taskService.getTaskByIdAndUser(id, user);
         if (task == null) {
             return ResponseEntity.status(403).body("error.task.notfound");
@@ -207,15 +193,13 @@ public class DashboardController {
             @RequestParam("taskId") Long taskId,
             @RequestParam("status") String status,
             @RequestBody List<Long> taskIds,
-            Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+            CurrentUser currentUser) {
+        User user = currentUser.getUser();
         Task task = taskService.getTaskByIdAndUser(taskId, user);
         if (task == null) {
             return ResponseEntity.status(403).body(null);
         }
-        task.setStatus(Task.TaskStatus.valueOf(status));
-        taskService.updateTask(task);
-        taskService.reorderTasks(taskIds, user);
+        taskService.moveTask(task, Task.TaskStatus.valueOf(status), taskIds);
         return ResponseEntity.ok(dtoMapper.toTaskDto(task));
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.mrtasks.controller.ExceptionHandler;
 
 import com.mrtasks.exception.RateLimitExceededException;
+import com.mrtasks.exception.RenderingOverloadedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -14,4 +16,11 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
                 .body(ex.getMessage()); // Return message key (e.g., "limit.error.rate.task")
     }
+
+    @ExceptionHandler(RenderingOverloadedException.class)
+    public ResponseEntity<String> handleRenderingOverloaded(RenderingOverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import com.mrtasks.repository.UserProfileRepository;
 import com.mrtasks.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -28,6 +29,7 @@ public class ForgotPasswordController {
         return "forgot-password";
     }
 
+    @Transactional
     @PostMapping("/forgot-password")
     public String processForgotPassword(
             @RequestParam String username,
@@ -0,0 +1,148 @@
+package com.mrtasks.controller;
+
+import com.mrtasks.model.IssuedInvoice;
+import com.mrtasks.model.dto.CursorPageDto;
+import com.mrtasks.model.dto.IssuedInvoiceDto;
+import com.mrtasks.model.dto.mapper.DtoMapper;
+import com.mrtasks.repository.IssuedInvoiceRepository;
+import com.mrtasks.service.auth.CurrentUser;
+import com.mrtasks.service.invoice.InvoiceArchiveStore;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+@Controller
+@RequestMapping("/invoices")
+@RequiredArgsConstructor
+public class InvoiceArchiveController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Tomcat sends the file itself (sendfile) when these request attributes are set
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final IssuedInvoiceRepository issuedInvoiceRepository;
+    private final InvoiceArchiveStore invoiceArchiveStore;
+    private final DtoMapper dtoMapper;
+
+    @GetMapping
+    @ResponseBody
+    public ResponseEntity<CursorPageDto<IssuedInvoiceDto>> listInvoices(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size,
+            CurrentUser currentUser) {
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<IssuedInvoice> invoices = issuedInvoiceRepository.findByUserAndNumberLessThanOrderByNumberDesc(
+                currentUser.getUser(), cursor != null ? cursor : Long.MAX_VALUE, PageRequest.of(0, size));
+
+        CursorPageDto<IssuedInvoiceDto> page = new CursorPageDto<>();
+        page.setContent(invoices.stream().map(dtoMapper::toIssuedInvoiceDto).toList());
+        page.setPageSize(size);
+        page.setNextCursor(invoices.size() == size ? String.valueOf(invoices.getLast().getNumber()) : null);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/{number}")
+    public void downloadInvoice(
+            @PathVariable long number,
+            CurrentUser currentUser,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        IssuedInvoice invoice = issuedInvoiceRepository.findByUserAndNumber(currentUser.getUser(), number)
+                .filter(issued -> issued.getContentHash() != null)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        Path file = invoiceArchiveStore.pathFor(invoice.getContentHash());
+        if (!Files.isReadable(file)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+
+        // An archived invoice never changes, so the content hash is a strong ETag
+        String etag = "\"" + invoice.getContentHash() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.maxAge(Duration.ofDays(365)).cachePrivate().immutable().getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        List<HttpRange> ranges = parseRanges(request.getHeader(HttpHeaders.RANGE));
+        // Only single ranges are honoured; for anything else the whole file is sent, which the spec allows
+        if (ranges.size() == 1) {
+            start = ranges.getFirst().getRangeStart(length);
+            end = ranges.getFirst().getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=invoice_" + number + ".pdf");
+        response.setContentLengthLong(end - start + 1);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    private static List<HttpRange> parseRanges(String header) {
+        try {
+            return HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            // A malformed Range header is ignored
+            return List.of();
+        }
+    }
+}
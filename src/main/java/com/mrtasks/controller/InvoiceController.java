@@ -6,13 +6,15 @@ import com.mrtasks.model.Client;
 import com.mrtasks.model.User;
 import com.mrtasks.model.UserProfile;
 import com.mrtasks.repository.ClientRepository;
-import com.mrtasks.repository.UserProfileRepository;
-import com.mrtasks.repository.UserRepository;
 import com.mrtasks.service.EmailService;
 import com.mrtasks.service.InvoiceService;
+import com.mrtasks.service.auth.CurrentUser;
+import com.mrtasks.service.invoice.InvoiceBatchService;
+import com.mrtasks.service.invoice.InvoiceRenderBulkhead;
 import com.mrtasks.utils.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -20,37 +22,102 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 @Controller
 @RequiredArgsConstructor
 public class InvoiceController {
     private final InvoiceService invoiceService;
-    private final UserRepository userRepository;
+    private final InvoiceBatchService invoiceBatchService;
+    private final InvoiceRenderBulkhead renderBulkhead;
     private final RateLimitConfig rateLimitConfig;
     private final EmailService emailService;
     private final ClientRepository clientRepository;
-    private final UserProfileRepository userProfileRepository;
 
+    // POST only: every download issues an invoice number. Issued invoices are re-downloaded, and revalidated
+    // by the browser, through /invoices/{number}
     @PostMapping("/invoice")
-    public ResponseEntity<byte[]> downloadInvoice(
+    public ResponseEntity<StreamingResponseBody> downloadInvoice(
             @RequestParam("taskIds") List<Long> taskIds,
             Authentication auth,
-            HttpServletRequest request) throws Exception {
+            CurrentUser currentUser,
+            HttpServletRequest request) {
         // Rate limiting
         boolean canDownloadInvoice = rateLimitConfig.canDownloadInvoice(auth.getName(), RequestUtils.getClientIp(request));
         if (!canDownloadInvoice) {
             throw new RateLimitExceededException("limit.error.rate.invoice");
         }
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-
+        User user = currentUser.getUser();
 
-        byte[] invoice = invoiceService.generateInvoice(user, taskIds);
+        InvoiceService.PreparedInvoice invoice = invoiceService.prepareInvoice(user, taskIds);
+        InvoiceRenderBulkhead.Admission admission = renderBulkhead.admit();
+        cancelWhenDone(request, admission);
+        // Rendered to a temporary file on the pool, so the admission is given back before a slow client is
+        // written to, without holding the PDF in memory
+        StreamingResponseBody body = out -> {
+            Path pdf = Files.createTempFile("invoice-", ".pdf");
+            try {
+                admission.render(() -> {
+                    try (OutputStream file = Files.newOutputStream(pdf)) {
+                        invoiceService.writeInvoice(invoice, file);
+                    }
+                    return null;
+                });
+                try (InputStream in = Files.newInputStream(pdf)) {
+                    in.transferTo(out);
+                }
+            } finally {
+                Files.deleteIfExists(pdf);
+            }
+        };
         return ResponseEntity.ok()
                 .header("Content-Disposition", "attachment; filename=invoice_" + user.getUsername() + ".pdf")
                 .contentType(MediaType.APPLICATION_PDF)
-                .body(invoice);
+                .body(body);
+    }
+
+    @PostMapping("/invoice/batch")
+    public ResponseEntity<StreamingResponseBody> downloadInvoiceBatch(
+            @RequestParam(defaultValue = "false") boolean email,
+            Authentication auth,
+            CurrentUser currentUser,
+            HttpServletRequest request) {
+        if (!rateLimitConfig.canBatchInvoice(auth.getName(), RequestUtils.getClientIp(request))) {
+            throw new RateLimitExceededException("limit.error.rate.invoice.batch");
+        }
+        if (email && !currentUser.getProfile().isEmailVerified()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        User user = currentUser.getUser();
+        List<InvoiceBatchService.ClientInvoice> invoices = invoiceBatchService.prepareBatch(user);
+        if (invoices.isEmpty()) {
+            return ResponseEntity.noContent().build();
+        }
+        // The batch is admitted as one render; it bounds its own share of the rendering queue
+        InvoiceRenderBulkhead.Admission admission = renderBulkhead.admit();
+        cancelWhenDone(request, admission);
+        StreamingResponseBody body = out -> {
+            try {
+                invoiceBatchService.writeArchive(invoices, email, out);
+            } finally {
+                admission.release();
+            }
+        };
+        return ResponseEntity.ok()
+                .header("Content-Disposition", "attachment; filename=invoices_" + user.getUsername() + ".zip")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
     }
 
     @PostMapping("/invoice/send")
@@ -59,6 +126,7 @@ public class InvoiceController {
             @RequestParam Long clientId,
             @RequestParam List<Long> taskIds,
             Authentication auth,
+            CurrentUser currentUser,
             HttpServletRequest request) {
 
 
@@ -68,8 +136,8 @@ public class InvoiceController {
             throw new RateLimitExceededException("limit.error.rate.invoice.send");
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        UserProfile userProfile = userProfileRepository.findByUser(user).orElseThrow();
+        User user = currentUser.getUser();
+        UserProfile userProfile = currentUser.getProfile();
         Client client = clientRepository.findByIdAndUser(clientId, user);
 
         if (!userProfile.isEmailVerified())
@@ -79,12 +147,31 @@ public class InvoiceController {
             return ResponseEntity.badRequest().body("error.client.invalid");
         }
 
+        // Checked before rendering, so a repeat neither renders nor issues another invoice number
+        if (emailService.isInvoiceEmailQueued(client.getEmail(), userProfile.getCompanyName(), userProfile.getLanguage(), taskIds)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("error.invoice.already.sent");
+        }
+
+        InvoiceRenderBulkhead.Admission admission = renderBulkhead.admit();
         try {
-            byte[] invoice = invoiceService.generateInvoice(user, taskIds);
-            emailService.sendInvoiceEmail(client.getEmail(), invoice, userProfile.getCompanyName(), userProfile.getLanguage(), userProfile.getEmail());
+            if (!admission.render(() -> invoiceService.emailInvoice(user, taskIds, client.getEmail(), userProfile))) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("error.invoice.already.sent");
+            }
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("error.invoice.failed");
         }
     }
-}
\ No newline at end of file
+
+    // Also gives the admission back when the response ends without the body having run, e.g. on an async
+    // timeout or a disconnected client; a render still on the pool is cancelled and keeps it until it stops
+    private static void cancelWhenDone(HttpServletRequest request, InvoiceRenderBulkhead.Admission admission) {
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(InvoiceRenderBulkhead.Admission.class,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        admission.cancel();
+                    }
+                });
+    }
+}
@@ -7,9 +7,10 @@ import com.mrtasks.model.UserSubscription;
 import com.mrtasks.model.dto.ProfileDto;
 import com.mrtasks.model.dto.mapper.DtoMapper;
 import com.mrtasks.repository.UserProfileRepository;
-import com.mrtasks.repository.UserRepository;
 import com.mrtasks.repository.UserSubscriptionRepository;
 import com.mrtasks.service.EmailService;
+import com.mrtasks.service.auth.CurrentUser;
+import com.mrtasks.service.invoice.LogoCache;
 import com.mrtasks.utils.RequestUtils;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,13 +20,14 @@ import org.springframework.context.MessageSource;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.util.StringUtils;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Locale;
+import java.util.Objects;
 import java.util.UUID;
 
 @Controller
@@ -33,40 +35,33 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class ProfileController {
 
-    private final UserRepository userRepository;
     private final UserProfileRepository userProfileRepository;
     private final UserSubscriptionRepository userSubscriptionRepository;
     private final MessageSource messageSource;
     private final EmailService emailService;
     private final RateLimitConfig rateLimitConfig;
     private final DtoMapper dtoMapper;
+    private final LogoCache logoCache;
 
     @GetMapping
-    public String showProfile(Model model, Authentication auth) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        UserProfile profile = userProfileRepository.findByUser(user)
-                .orElseGet(() -> {
-                    UserProfile newProfile = new UserProfile();
-                    newProfile.setUser(user);
-                    newProfile.setLanguage("en");
-                    return userProfileRepository.save(newProfile);
-                });
-        UserSubscription userSubscription = userSubscriptionRepository.findByUser(user)
+    public String showProfile(Model model, CurrentUser currentUser) {
+        UserSubscription userSubscription = userSubscriptionRepository.findByUser(currentUser.getUser())
                 .orElse(new UserSubscription());
 
-        model.addAttribute("profile", dtoMapper.toProfileDto(profile));
+        model.addAttribute("profile", dtoMapper.toProfileDto(currentUser.getProfile()));
         model.addAttribute("subscription", userSubscription);
         return "profile";
     }
 
+    @Transactional
     @PostMapping
     @ResponseBody
     public ResponseEntity<?> updateProfile(
             @ModelAttribute ProfileDto profileDto,
-            Authentication auth,
+            CurrentUser currentUser,
             HttpServletResponse response,
             HttpServletRequest request) {
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
         UserProfile existingProfile = userProfileRepository.findByUser(user)
                 .orElseGet(() -> {
                     UserProfile newProfile = new UserProfile();
@@ -111,6 +106,7 @@ public class ProfileController {
         }
 
         // Update profile
+        String oldLogoUrl = existingProfile.getLogoUrl();
         dtoMapper.toUserProfile(profileDto, existingProfile);
 
         // Handle email verification if changed
@@ -123,6 +119,11 @@ public class ProfileController {
 
         userProfileRepository.save(existingProfile);
 
+        if (!Objects.equals(oldLogoUrl, existingProfile.getLogoUrl())) {
+            logoCache.evict(oldLogoUrl);
+            logoCache.evict(existingProfile.getLogoUrl());
+        }
+
         return ResponseEntity.ok(dtoMapper.toProfileDto(existingProfile));
     }
 
@@ -130,7 +131,7 @@ public class ProfileController {
     @ResponseBody
     public ResponseEntity<?> updateLanguage(
             @RequestParam("language") String language,
-            Authentication auth,
+            CurrentUser currentUser,
             HttpServletResponse response) {
         // Validate language code
         if (!language.matches("^[a-z]{2}$")) {
@@ -138,7 +139,7 @@ public class ProfileController {
                     .body(messageSource.getMessage("profile.language.invalid", null, LocaleContextHolder.getLocale()));
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
         UserProfile profile = userProfileRepository.findByUser(user)
                 .orElseGet(() -> {
                     UserProfile newProfile = new UserProfile();
@@ -167,14 +168,14 @@ public class ProfileController {
     @ResponseBody
     public ResponseEntity<?> updateCurrency(
             @RequestParam("currency") String currency,
-            Authentication auth) {
+            CurrentUser currentUser) {
         // Validate currency code
         if (!currency.matches("^[A-Z]{3}$")) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(messageSource.getMessage("profile.currency.invalid", null, LocaleContextHolder.getLocale()));
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
         UserProfile profile = userProfileRepository.findByUser(user)
                 .orElseGet(() -> {
                     UserProfile newProfile = new UserProfile();
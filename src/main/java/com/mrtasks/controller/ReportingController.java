@@ -2,10 +2,10 @@ package com.mrtasks.controller;
 
 import com.mrtasks.config.RateLimitConfig;
 import com.mrtasks.exception.RateLimitExceededException;
-import com.mrtasks.model.Task;
 import com.mrtasks.model.User;
-import com.mrtasks.repository.TaskRepository;
-import com.mrtasks.repository.UserRepository;
+import com.mrtasks.model.dto.ChartDataDto;
+import com.mrtasks.service.ReportingService;
+import com.mrtasks.service.auth.CurrentUser;
 import com.mrtasks.utils.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -16,20 +16,12 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.TextStyle;
-import java.util.*;
-import java.util.stream.Collectors;
-
 @Controller
 @RequestMapping("/reporting")
 @RequiredArgsConstructor
 public class ReportingController {
 
-    private final TaskRepository taskRepository;
-    private final UserRepository userRepository;
+    private final ReportingService reportingService;
     private final RateLimitConfig rateLimitConfig;
 
     @GetMapping
@@ -37,46 +29,25 @@ public class ReportingController {
         return "reporting";
     }
 
-    private List<Task> getTasksForRange(User user, String range) {
-        LocalDateTime startDate = switch (range.toLowerCase()) {
-            case "last-3-months" -> LocalDateTime.now().minusMonths(3);
-            case "last-6-months" -> LocalDateTime.now().minusMonths(6);
-            case "one-year" -> LocalDateTime.now().minusYears(1);
-            case "ytd" -> LocalDateTime.now().withMonth(1).withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
-            default -> LocalDateTime.now().minusMonths(1);
-        };
-        return taskRepository.findByUserAndDeadlineAfter(user, startDate);
-    }
-
     @GetMapping("/tasks-per-client")
-    public ResponseEntity<Map<String, Object>> getTasksPerClient(
+    public ResponseEntity<ChartDataDto> getTasksPerClient(
             Authentication auth,
+            CurrentUser currentUser,
             @RequestParam(defaultValue = "last-month") String range, HttpServletRequest request) {
         // Rate limiting
         boolean canGenerateReport = rateLimitConfig.canGenerateReport(auth.getName(), RequestUtils.getClientIp(request));
         if (!canGenerateReport) {
             throw new RateLimitExceededException("limit.error.rate.report");
         }
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-
-        List<Task> tasks = getTasksForRange(user, range);
+        User user = currentUser.getUser();
 
-        Map<String, Long> tasksPerClient = tasks.stream()
-                .filter(task -> task.getClient() != null)
-                .collect(Collectors.groupingBy(
-                        task -> task.getClient().getName(),
-                        Collectors.counting()
-                ));
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("labels", new ArrayList<>(tasksPerClient.keySet()));
-        response.put("values", new ArrayList<>(tasksPerClient.values()));
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(reportingService.getTasksPerClient(user, range));
     }
 
     @GetMapping("/revenue-per-client")
-    public ResponseEntity<Map<String, Object>> getRevenuePerClient(
+    public ResponseEntity<ChartDataDto> getRevenuePerClient(
             Authentication auth,
+            CurrentUser currentUser,
             @RequestParam(defaultValue = "last-month") String range,
             HttpServletRequest request) {
         // Rate limiting
@@ -85,26 +56,15 @@ public class ReportingController {
             throw new RateLimitExceededException("limit.error.rate.report");
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-
-        List<Task> tasks = getTasksForRange(user, range);
-
-        Map<String, Double> revenuePerClient = tasks.stream()
-                .filter(task -> task.getClient() != null && task.isBillable())
-                .collect(Collectors.groupingBy(
-                        task -> task.getClient().getName(),
-                        Collectors.summingDouble(Task::getTotal)
-                ));
+        User user = currentUser.getUser();
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("labels", new ArrayList<>(revenuePerClient.keySet()));
-        response.put("values", new ArrayList<>(revenuePerClient.values()));
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(reportingService.getRevenuePerClient(user, range));
     }
 
     @GetMapping("/tasks-per-month")
-    public ResponseEntity<Map<String, Object>> getTasksPerMonth(
+    public ResponseEntity<ChartDataDto> getTasksPerMonth(
             Authentication auth,
+            CurrentUser currentUser,
             @RequestParam(defaultValue = "last-month") String range,
             HttpServletRequest request) {
         // Rate limiting
@@ -113,34 +73,15 @@ public class ReportingController {
             throw new RateLimitExceededException("limit.error.rate.report");
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+        User user = currentUser.getUser();
 
-        List<Task> tasks = getTasksForRange(user, range);
-
-        Map<String, Long> tasksPerMonth = tasks.stream()
-                .collect(Collectors.groupingBy(
-                        task -> task.getDeadline().getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + task.getDeadline().getYear(),
-                        Collectors.counting()
-                ));
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.ENGLISH);
-        List<Map.Entry<String, Long>> sortedEntries = tasksPerMonth.entrySet().stream()
-                .sorted((e1, e2) -> {
-                    LocalDate date1 = LocalDate.parse("01 " + e1.getKey(), formatter);
-                    LocalDate date2 = LocalDate.parse("01 " + e2.getKey(), formatter);
-                    return date1.compareTo(date2);
-                })
-                .toList();
-
-        Map<String, Object> response = new HashMap<>();
-        response.put("labels", sortedEntries.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
-        response.put("values", sortedEntries.stream().map(Map.Entry::getValue).collect(Collectors.toList()));
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(reportingService.getTasksPerMonth(user, range));
     }
 
     @GetMapping("/revenue-per-month")
-    public ResponseEntity<Map<String, Object>> getRevenuePerMonth(
+    public ResponseEntity<ChartDataDto> getRevenuePerMonth(
             Authentication auth,
+            CurrentUser currentUser,
             @RequestParam(defaultValue = "last-month") String range,
             HttpServletRequest request) {
         // Rate limiting
@@ -149,29 +90,8 @@ public class ReportingController {
             throw new RateLimitExceededException("limit.error.rate.report");
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-
-        List<Task> tasks = getTasksForRange(user, range);
-
-        Map<String, Double> revenuePerMonth = tasks.stream()
-                .filter(Task::isBillable)
-                .collect(Collectors.groupingBy(
-                        task -> task.getDeadline().getMonth().getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + task.getDeadline().getYear(),
-                        Collectors.summingDouble(Task::getTotal)
-                ));
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.ENGLISH);
-        List<Map.Entry<String, Double>> sortedEntries = revenuePerMonth.entrySet().stream()
-                .sorted((e1, e2) -> {
-                    LocalDate date1 = LocalDate.parse("01 " + e1.getKey(), formatter);
-                    LocalDate date2 = LocalDate.parse("01 " + e2.getKey(), formatter);
-                    return date1.compareTo(date2);
-                })
-                .toList();
+        User user = currentUser.getUser();
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("labels", sortedEntries.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
-        response.put("values", sortedEntries.stream().map(Map.Entry::getValue).collect(Collectors.toList()));
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(reportingService.getRevenuePerMonth(user, range));
     }
-}
\ No newline at end of file
+}
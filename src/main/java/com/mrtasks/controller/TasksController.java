@@ -1,23 +1,20 @@
 package com.mrtasks.controller;
 
 import com.mrtasks.config.RateLimitConfig;
-import com.mrtasks.model.Task;
 import com.mrtasks.model.Task.TaskStatus;
 import com.mrtasks.model.User;
 import com.mrtasks.model.dto.ClientDto;
 import com.mrtasks.model.dto.mapper.DtoMapper;
 import com.mrtasks.model.dto.PageDto;
 import com.mrtasks.model.dto.TaskDto;
+import com.mrtasks.model.enums.TaskSortField;
 import com.mrtasks.repository.ClientRepository;
-import com.mrtasks.repository.TaskRepository;
-import com.mrtasks.repository.UserRepository;
 import com.mrtasks.service.TaskService;
+import com.mrtasks.service.auth.CurrentUser;
 import com.mrtasks.utils.RequestUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -27,7 +24,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -37,61 +33,54 @@ import java.util.stream.Collectors;
 public class TasksController {
 
     private final TaskService taskService;
-    private final UserRepository userRepository;
     private final ClientRepository clientRepository;
-    private final TaskRepository taskRepository;
     private final RateLimitConfig rateLimitConfig;
     private final DtoMapper dtoMapper;
 
     @GetMapping("/tasks")
     public String listAllTasks(
-            @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) Long clientId,
             @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "orderIndex") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
             Model model,
             Authentication auth,
+            CurrentUser currentUser,
             HttpServletRequest request) {
-        // Validate page and size
-        if (page < 0) {
-            page = 0;
-        }
+        size = Math.max(1, Math.min(size, TaskService.MAX_PAGE_SIZE));
         // Rate limiting
         boolean canSearchTasks = rateLimitConfig.canSearchTasks(auth.getName(), RequestUtils.getClientIp(request));
         if (!canSearchTasks) {
-            User user = userRepository.findByUsername(auth.getName()).orElseThrow();
+            User user = currentUser.getUser();
             model.addAttribute("error", "limit.error.rate.task.search");
             model.addAttribute("tasks", List.of());
             model.addAttribute("clients", clientRepository.findByUser(user).stream()
                     .map(dtoMapper::toClientDto)
                     .collect(Collectors.toList()));
-            model.addAttribute("currentPage", 0);
             model.addAttribute("totalPages", 0);
+            model.addAttribute("nextCursor", null);
             model.addAttribute("pageSize", size);
             model.addAttribute("search", search);
             model.addAttribute("clientId", clientId);
             model.addAttribute("status", status);
+            model.addAttribute("sort", sort);
+            model.addAttribute("direction", direction);
             return "tasks";
         }
 
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        Pageable pageable = PageRequest.of(page, size);
-
-
-        // Convert String status to TaskStatus enum if provided
-        TaskStatus taskStatus = null;
-        if (status != null && !status.trim().isEmpty()) {
-            try {
-                taskStatus = TaskStatus.valueOf(status.trim());
-            } catch (IllegalArgumentException e) {
-                taskStatus = null;
-            }
+        User user = currentUser.getUser();
+        // The page renders the first page; the script pages on from there with the cursor
+        TaskService.TaskSort taskSort;
+        try {
+            taskSort = parseSort(sort, direction);
+        } catch (IllegalArgumentException e) {
+            taskSort = TaskService.TaskSort.DEFAULT;
         }
-
-        Page<Task> taskPage = queryTasks(user, search, clientId, taskStatus, pageable);
-        List<TaskDto> taskDtos = taskPage.getContent().stream()
-                .sorted(Comparator.comparingInt(Task::getOrderIndex))
+        TaskService.TaskPage taskPage = taskService.findTasks(
+                user, new TaskService.TaskFilter(search, clientId, parseStatus(status)), taskSort, null, size, true);
+        List<TaskDto> taskDtos = taskPage.tasks().stream()
                 .map(dtoMapper::toTaskDto)
                 .collect(Collectors.toList());
         List<ClientDto> clientDtos = clientRepository.findByUser(user).stream()
@@ -100,87 +89,78 @@ public class TasksController {
 
         model.addAttribute("tasks", taskDtos);
         model.addAttribute("clients", clientDtos);
-        model.addAttribute("currentPage", taskPage.getNumber());
-        model.addAttribute("totalPages", taskPage.getTotalPages());
+        model.addAttribute("totalPages", totalPages(taskPage.total(), size));
+        model.addAttribute("nextCursor", taskPage.nextCursor());
         model.addAttribute("pageSize", size);
         model.addAttribute("search", search);
         model.addAttribute("clientId", clientId);
         model.addAttribute("status", status);
+        model.addAttribute("sort", taskSort.field().getLabel());
+        model.addAttribute("direction", taskSort.descending() ? "desc" : "asc");
         return "tasks";
     }
 
     @GetMapping("/tasks/search")
     @ResponseBody
     public ResponseEntity<?> searchTasks(
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean count,
             @RequestParam(required = false) String search,
             @RequestParam(required = false) Long clientId,
             @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "orderIndex") String sort,
+            @RequestParam(defaultValue = "asc") String direction,
             Authentication auth,
+            CurrentUser currentUser,
             HttpServletRequest request) {
         // Rate limiting
         boolean canSearchTasks = rateLimitConfig.canSearchTasks(auth.getName(), RequestUtils.getClientIp(request));
         if (!canSearchTasks) {
             return ResponseEntity.status(429).body("limit.error.rate.task.search");
         }
-        User user = userRepository.findByUsername(auth.getName()).orElseThrow();
-        // Validate page and size
-        if (page < 0) {
-            page = 0;
+        User user = currentUser.getUser();
+        size = Math.max(1, Math.min(size, TaskService.MAX_PAGE_SIZE));
+
+        TaskService.TaskPage taskPage;
+        try {
+            taskPage = taskService.findTasks(user, new TaskService.TaskFilter(search, clientId, parseStatus(status)),
+                    parseSort(sort, direction), cursor, size, count);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("error.invalid.request");
         }
 
-        Pageable pageable = PageRequest.of(page, size);
+        PageDto<TaskDto> pageDto = new PageDto<>();
+        pageDto.setContent(taskPage.tasks().stream()
+                .map(dtoMapper::toTaskDto)
+                .collect(Collectors.toList()));
+        pageDto.setPageSize(size);
+        pageDto.setNextCursor(taskPage.nextCursor());
+        if (taskPage.total() != null) {
+            pageDto.setTotalElements(taskPage.total());
+            pageDto.setTotalPages(totalPages(taskPage.total(), size));
+        }
 
+        return ResponseEntity.ok(pageDto);
+    }
 
-        // Convert String status to TaskStatus enum if provided
-        TaskStatus taskStatus = null;
+    // Convert String status to TaskStatus enum if provided
+    private static TaskStatus parseStatus(String status) {
         if (status != null && !status.trim().isEmpty()) {
             try {
-                taskStatus = TaskStatus.valueOf(status.trim());
+                return TaskStatus.valueOf(status.trim());
             } catch (IllegalArgumentException e) {
-                taskStatus = null;
+                return null;
             }
         }
+        return null;
+    }
 
-        Page<Task> taskPage = queryTasks(user, search, clientId, taskStatus, pageable);
-        PageDto<TaskDto> pageDto = new PageDto<>();
-        pageDto.setContent(taskPage.getContent().stream()
-                .sorted(Comparator.comparingInt(Task::getOrderIndex))
-                .map(dtoMapper::toTaskDto)
-                .collect(Collectors.toList()));
-        pageDto.setPageNumber(taskPage.getNumber());
-        pageDto.setPageSize(taskPage.getSize());
-        pageDto.setTotalPages(taskPage.getTotalPages());
-        pageDto.setTotalElements(taskPage.getTotalElements());
-
-        return ResponseEntity.ok(pageDto);
+    private static TaskService.TaskSort parseSort(String sort, String direction) {
+        return new TaskService.TaskSort(TaskSortField.fromLabel(sort), Sort.Direction.fromString(direction).isDescending());
     }
 
-    private Page<Task> queryTasks(User user, String search, Long clientId, TaskStatus taskStatus, Pageable pageable) {
-        if (search != null && !search.trim().isEmpty()) {
-            if (clientId != null && taskStatus != null) {
-                return taskRepository.findByUserAndTitleContainingIgnoreCaseAndClientIdAndStatus(
-                        user, search, clientId, taskStatus, pageable);
-            } else if (clientId != null) {
-                return taskRepository.findByUserAndTitleContainingIgnoreCaseAndClientId(
-                        user, search, clientId, pageable);
-            } else if (taskStatus != null) {
-                return taskRepository.findByUserAndTitleContainingIgnoreCaseAndStatus(
-                        user, search, taskStatus, pageable);
-            } else {
-                return taskRepository.findByUserAndTitleContainingIgnoreCase(user, search, pageable);
-            }
-        } else {
-            if (clientId != null && taskStatus != null) {
-                return taskRepository.findByUserAndClientIdAndStatus(user, clientId, taskStatus, pageable);
-            } else if (clientId != null) {
-                return taskRepository.findByUserAndClientId(user, clientId, pageable);
-            } else if (taskStatus != null) {
-                return taskRepository.findByUserAndStatus(user, taskStatus, pageable);
-            } else {
-                return taskRepository.findByUser(user, pageable);
-            }
-        }
+    private static int totalPages(long total, int size) {
+        return (int) ((total + size - 1) / size);
     }
-}
\ No newline at end of file
+}
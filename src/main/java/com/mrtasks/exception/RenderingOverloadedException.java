@@ -0,0 +1,14 @@
+package com.mrtasks.exception;
+
+public class RenderingOverloadedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public RenderingOverloadedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,11 +1,13 @@
 package com.mrtasks.model;
 
+import com.mrtasks.service.cache.ClientNameIndexListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 @Entity
 @Table(name = "clients")
+@EntityListeners(ClientNameIndexListener.class)
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class Client extends Auditable {
@@ -0,0 +1,73 @@
+package com.mrtasks.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * An email waiting to be delivered. Rows are written in the sender's transaction and picked up by
+ * {@link com.mrtasks.service.scheduler.EmailOutboxScheduler}.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_email_outbox_due", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_email_outbox_dedupe", columnList = "dedupe_key, created_at")
+})
+@Data
+public class EmailOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(name = "sender", nullable = false)
+    private String from;
+
+    private String replyTo;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(columnDefinition = "text", nullable = false)
+    private String body;
+
+    private boolean html;
+
+    private String attachmentName;
+    private String attachmentType;
+
+    @Column(columnDefinition = "bytea")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private byte[] attachment;
+
+    // Hash of recipient and content; an identical message queued again within the dedupe window is dropped
+    @Column(name = "dedupe_key", length = 64, nullable = false)
+    private String dedupeKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+
+    public enum Status {
+        PENDING, SENDING, SENT, FAILED
+    }
+}
@@ -0,0 +1,20 @@
+package com.mrtasks.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Per-user high-water mark for invoice numbers. Instances reserve numbers in blocks by moving it forward
+ * (see {@code InvoiceNumberAllocator}), so every number below it has been handed to some instance.
+ */
+@Entity
+@Table(name = "invoice_sequences")
+@Data
+public class InvoiceSequence {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "next_value", nullable = false)
+    private long nextValue;
+}
@@ -0,0 +1,63 @@
+package com.mrtasks.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Entity
+@Table(name = "issued_invoices",
+        uniqueConstraints = @UniqueConstraint(name = "uk_issued_invoices_user_number", columnNames = {"user_id", "number"}))
+@Data
+public class IssuedInvoice {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false)
+    private long number;
+
+    // Snapshot of the client the invoice was addressed to; the client itself may later change or be deleted
+    @Column(name = "client_id")
+    private Long clientId;
+
+    @Column(name = "client_name")
+    private String clientName;
+
+    @Column(columnDefinition = "float default 0")
+    private double total;
+
+    @Column(name = "advance_paid", columnDefinition = "float default 0")
+    private double advancePaid;
+
+    @Column(name = "amount_due", columnDefinition = "float default 0")
+    private double amountDue;
+
+    @Column(length = 3)
+    private String currency;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "task_ids", columnDefinition = "bigint[]", nullable = false)
+    private List<Long> taskIds;
+
+    // Fingerprint of the rendered content, as used for the invoice cache
+    @Column(length = 64)
+    private String fingerprint;
+
+    // SHA-256 of the PDF, naming its file in the archive store
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    @Column(name = "issued_at", nullable = false)
+    private LocalDateTime issuedAt;
+}
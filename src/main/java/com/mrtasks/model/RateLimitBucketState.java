@@ -0,0 +1,23 @@
+package com.mrtasks.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Table backing the Postgres rate limit backend. Rows are read and written by Bucket4j's proxy manager,
+ * never through JPA; the entity only exists so the schema is managed with the rest of the model.
+ */
+@Entity
+@Table(name = "rate_limit_buckets")
+@Data
+public class RateLimitBucketState {
+    @Id
+    @Column(length = 300)
+    private String id;
+
+    @Column(columnDefinition = "bytea")
+    private byte[] state;
+
+    @Column(name = "expires_at")
+    private Long expiresAt;
+}
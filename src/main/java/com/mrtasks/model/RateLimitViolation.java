@@ -0,0 +1,9 @@
+package com.mrtasks.model;
+
+import com.mrtasks.model.enums.RateLimitAction;
+
+/**
+ * One rejected request. Kept as raw fields so that recording it costs no formatting on the request thread.
+ */
+public record RateLimitViolation(long sequence, long timestamp, String username, String ipAddress, RateLimitAction action) {
+}
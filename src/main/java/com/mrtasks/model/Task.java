@@ -3,6 +3,8 @@ package com.mrtasks.model;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Formula;
 
 import java.time.LocalDateTime;
 
@@ -45,6 +47,23 @@ public class Task extends Auditable {
     @Enumerated(EnumType.STRING)
     private TaskStatus status = TaskStatus.TODO;
 
+    // Stored generated column mirroring getTotal() (see db/migration/V6__task_search_and_sort_columns.sql), so
+    // listings can sort by it in the database
+    @Formula("total_amount")
+    @EqualsAndHashCode.Exclude
+    private Double totalAmount;
+
+    // Reporting contribution as last loaded or saved, so rollups can be adjusted by the difference
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private TaskRollup.Contribution persistedContribution;
+
+    @PostLoad
+    protected void onLoad() {
+        this.persistedContribution = TaskRollup.Contribution.of(this);
+    }
+
     public double getTotal() {
         if (!billable) return 0;
         return billingType == BillingType.FIXED ? fixedAmount : hoursWorked * hourlyRate;
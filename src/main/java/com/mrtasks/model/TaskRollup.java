@@ -0,0 +1,45 @@
+package com.mrtasks.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Entity
+// Unique on (user_id, coalesce(client_id, 0), year_month, billable), see db/migration/V8__task_rollups_client_key.sql
+@Table(name = "task_rollups")
+@Data
+public class TaskRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne
+    @JoinColumn(name = "client_id")
+    private Client client;
+
+    // Deadline month encoded as yyyyMM, e.g. 202504
+    @Column(name = "year_month", nullable = false)
+    private int yearMonth;
+
+    private boolean billable;
+    private long taskCount;
+    private double totalAmount;
+    private double remainingDue;
+
+    /**
+     * What a single task adds to its rollup row. Tasks without a deadline are not reported on and have none.
+     */
+    public record Contribution(Client client, int yearMonth, boolean billable, double total, double remainingDue) {
+        public static Contribution of(Task task) {
+            if (task.getDeadline() == null) {
+                return null;
+            }
+            return new Contribution(task.getClient(),
+                    task.getDeadline().getYear() * 100 + task.getDeadline().getMonthValue(),
+                    task.isBillable(), task.getTotal(), task.getRemainingDue());
+        }
+    }
+}
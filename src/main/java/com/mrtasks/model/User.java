@@ -1,6 +1,7 @@
 package com.mrtasks.model;
 
 import com.mrtasks.model.enums.UserStatus;
+import com.mrtasks.service.auth.CurrentUserCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -8,6 +9,7 @@ import lombok.EqualsAndHashCode;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(CurrentUserCacheListener.class)
 @Table(name = "users")
 @Data
 @EqualsAndHashCode(callSuper = true)
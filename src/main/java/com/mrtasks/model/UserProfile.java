@@ -1,10 +1,12 @@
 package com.mrtasks.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mrtasks.service.auth.CurrentUserCacheListener;
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
+@EntityListeners(CurrentUserCacheListener.class)
 @Table(name = "user_profile")
 @Data
 public class UserProfile {
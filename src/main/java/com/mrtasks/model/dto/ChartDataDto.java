@@ -0,0 +1,12 @@
+package com.mrtasks.model.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class ChartDataDto {
+    private List<String> labels = new ArrayList<>();
+    private List<Number> values = new ArrayList<>();
+}
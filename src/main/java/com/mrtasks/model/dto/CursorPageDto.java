@@ -0,0 +1,15 @@
+package com.mrtasks.model.dto;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * A page of a keyset-paginated listing. Pass {@code nextCursor} back as {@code cursor} to fetch the following
+ * page; it is null on the last one.
+ */
+@Data
+public class CursorPageDto<T> {
+    private List<T> content;
+    private int pageSize;
+    private String nextCursor;
+}
@@ -0,0 +1,20 @@
+package com.mrtasks.model.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class IssuedInvoiceDto {
+    private long number;
+    private Long clientId;
+    private String clientName;
+    private double total;
+    private double advancePaid;
+    private double amountDue;
+    private String currency;
+    private List<Long> taskIds;
+    private LocalDateTime issuedAt;
+    private Long sizeBytes;
+}
@@ -8,6 +8,9 @@ public class PageDto<T> {
     private List<T> content;
     private int pageNumber;
     private int pageSize;
-    private int totalPages;
-    private long totalElements;
+    // Null when the listing was not counted
+    private Integer totalPages;
+    private Long totalElements;
+    // Set by keyset-paginated listings; pass back as the cursor for the next page
+    private String nextCursor;
 }
\ No newline at end of file
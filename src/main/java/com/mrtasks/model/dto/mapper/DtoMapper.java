@@ -2,6 +2,7 @@ package com.mrtasks.model.dto.mapper;
 
 import com.mrtasks.model.*;
 import com.mrtasks.model.dto.ClientDto;
+import com.mrtasks.model.dto.IssuedInvoiceDto;
 import com.mrtasks.model.dto.ProfileDto;
 import com.mrtasks.model.dto.TaskDto;
 import com.mrtasks.model.dto.UserDto;
@@ -45,6 +46,21 @@ public class DtoMapper {
         return dto;
     }
 
+    public IssuedInvoiceDto toIssuedInvoiceDto(IssuedInvoice invoice) {
+        IssuedInvoiceDto dto = new IssuedInvoiceDto();
+        dto.setNumber(invoice.getNumber());
+        dto.setClientId(invoice.getClientId());
+        dto.setClientName(invoice.getClientName());
+        dto.setTotal(invoice.getTotal());
+        dto.setAdvancePaid(invoice.getAdvancePaid());
+        dto.setAmountDue(invoice.getAmountDue());
+        dto.setCurrency(invoice.getCurrency());
+        dto.setTaskIds(invoice.getTaskIds());
+        dto.setIssuedAt(invoice.getIssuedAt());
+        dto.setSizeBytes(invoice.getSizeBytes());
+        return dto;
+    }
+
     public Task toTask(TaskDto dto, Task task) {
         task.setTitle(dto.getTitle());
         task.setDescription(dto.getDescription());
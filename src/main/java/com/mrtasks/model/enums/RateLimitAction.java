@@ -0,0 +1,31 @@
+package com.mrtasks.model.enums;
+
+public enum RateLimitAction {
+    DASHBOARD("dashboard", 50),
+    TASK_CREATE("task-create", 20),
+    CLIENT_CREATE("client-create", 20),
+    INVOICE_DOWNLOAD("invoice-download", 10),
+    INVOICE_SEND("invoice-send", 5),
+    INVOICE_BATCH("invoice-batch", 4),
+    TASK_SEARCH("task-search", 50),
+    CLIENT_SEARCH("client-search", 50),
+    CLIENT_SUGGEST("client-suggest", 1200),
+    REPORT("report", 40),
+    EMAIL_CHANGE("email-change", 2);
+
+    private final String label;
+    private final long capacityPerHour;
+
+    RateLimitAction(String label, long capacityPerHour) {
+        this.label = label;
+        this.capacityPerHour = capacityPerHour;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getCapacityPerHour() {
+        return capacityPerHour;
+    }
+}
@@ -0,0 +1,76 @@
+package com.mrtasks.model.enums;
+
+import com.mrtasks.model.Task;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.function.Function;
+
+/**
+ * Orders the task listing can be sorted by, each backed by a (user_id, column, id) index created in
+ * db/migration/V6__task_search_and_sort_columns.sql.
+ * Ties are broken by id, so every order is total and can be paged with a (value, id) cursor.
+ */
+public enum TaskSortField {
+    ORDER_INDEX("orderIndex", "orderIndex", false, Task::getOrderIndex, Integer::valueOf),
+    DEADLINE("deadline", "deadline", true, Task::getDeadline, LocalDateTime::parse),
+    CREATED_AT("createdAt", "createdAt", false, Task::getCreatedAt, LocalDateTime::parse),
+    TOTAL("total", "totalAmount", false, Task::getTotal, Double::valueOf),
+    STATUS("status", "status", true, Task::getStatus, Task.TaskStatus::valueOf);
+
+    private final String label;
+    private final String attribute;
+    private final boolean nullable;
+    private final Function<Task, Comparable<?>> getter;
+    private final Function<String, Comparable<?>> parser;
+
+    TaskSortField(String label, String attribute, boolean nullable,
+                  Function<Task, Comparable<?>> getter, Function<String, Comparable<?>> parser) {
+        this.label = label;
+        this.attribute = attribute;
+        this.nullable = nullable;
+        this.getter = getter;
+        this.parser = parser;
+    }
+
+    public static TaskSortField fromLabel(String label) {
+        for (TaskSortField field : values()) {
+            if (field.label.equals(label)) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort field: " + label);
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public Comparable<?> valueOf(Task task) {
+        return getter.apply(task);
+    }
+
+    // Inverse of String.valueOf for the cursor; null stands for an empty string
+    public Comparable<?> parse(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return parser.apply(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed " + label + " value: " + value, e);
+        }
+    }
+
+    public String format(Comparable<?> value) {
+        return value == null ? "" : value.toString();
+    }
+}
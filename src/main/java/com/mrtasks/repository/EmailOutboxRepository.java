@@ -0,0 +1,53 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    boolean existsByDedupeKeyAndCreatedAtAfter(String dedupeKey, LocalDateTime createdAfter);
+
+    /**
+     * Takes a transaction-scoped advisory lock on the dedupe key, so writers of the same message check and queue
+     * it one at a time. Released when the caller's transaction ends.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "select 1 from pg_advisory_xact_lock(hashtext(:dedupeKey))", nativeQuery = true)
+    int lockDedupeKey(@Param("dedupeKey") String dedupeKey);
+
+    long countByStatus(EmailOutbox.Status status);
+
+    /**
+     * Claims up to {@code limit} due messages by leasing them until {@code leaseUntil}. Rows locked by another
+     * instance are skipped, and a message whose lease ran out (its sender died) becomes due again.
+     */
+    @Transactional
+    @Query(value = "update email_outbox set status = 'SENDING', attempts = attempts + 1, next_attempt_at = :leaseUntil " +
+            "where id in (select id from email_outbox where status in ('PENDING', 'SENDING') and next_attempt_at <= :now " +
+            "order by next_attempt_at limit :limit for update skip locked) returning id", nativeQuery = true)
+    List<Long> claimDue(@Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutbox e set e.status = 'SENT', e.sentAt = :sentAt, e.attachment = null, e.lastError = null where e.id = :id")
+    void markSent(@Param("id") Long id, @Param("sentAt") LocalDateTime sentAt);
+
+    @Transactional
+    @Modifying
+    @Query("update EmailOutbox e set e.status = :status, e.nextAttemptAt = :nextAttemptAt, e.lastError = :error where e.id = :id")
+    void markFailedAttempt(@Param("id") Long id, @Param("status") EmailOutbox.Status status,
+                           @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query("delete from EmailOutbox e where e.status = 'SENT' and e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,21 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.InvoiceSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface InvoiceSequenceRepository extends JpaRepository<InvoiceSequence, Long> {
+
+    /**
+     * Reserves the next {@code size} invoice numbers for the user and returns the first one. The row lock is
+     * held only for this statement, in its own transaction, so callers never wait on each other's invoices.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query(value = "insert into invoice_sequences (user_id, next_value) values (:userId, 1 + :size) " +
+            "on conflict (user_id) do update set next_value = invoice_sequences.next_value + :size " +
+            "returning next_value - :size", nativeQuery = true)
+    long reserveBlock(@Param("userId") Long userId, @Param("size") int size);
+}
@@ -0,0 +1,16 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.IssuedInvoice;
+import com.mrtasks.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface IssuedInvoiceRepository extends JpaRepository<IssuedInvoice, Long> {
+    Optional<IssuedInvoice> findByUserAndNumber(User user, long number);
+
+    // Keyset page: newest first, starting below the last number of the previous page (served by the unique index)
+    List<IssuedInvoice> findByUserAndNumberLessThanOrderByNumberDesc(User user, long number, Pageable pageable);
+}
@@ -3,28 +3,61 @@ package com.mrtasks.repository;
 import com.mrtasks.model.Client;
 import com.mrtasks.model.Task;
 import com.mrtasks.model.User;
-import org.springframework.data.domain.Page;
+import com.mrtasks.repository.projection.MonthlyReportRow;
+import com.mrtasks.repository.projection.ReportRow;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-public interface TaskRepository extends JpaRepository<Task, Long> {
+public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task>, TaskRepositoryCustom {
     List<Task> findByUser(User user);
     Task findByIdAndUser(Long id, User user);
     List<Task> findByUserAndIdIn(User user, List<Long> taskIds);
     List<Task> findByUserAndStatus(User user, Task.TaskStatus status);
-    Page<Task> findByUser(User user, Pageable pageable);
-    Page<Task> findByUserAndTitleContainingIgnoreCase(User user, String title, Pageable pageable);
-    Page<Task> findByUserAndClientId(User user, Long clientId, Pageable pageable);
-    Page<Task> findByUserAndStatus(User user, Task.TaskStatus status, Pageable pageable);
-    Page<Task> findByUserAndTitleContainingIgnoreCaseAndClientId(User user, String title, Long clientId, Pageable pageable);
-    Page<Task> findByUserAndTitleContainingIgnoreCaseAndStatus(User user, String title, Task.TaskStatus status, Pageable pageable);
-    Page<Task> findByUserAndClientIdAndStatus(User user, Long clientId, Task.TaskStatus status, Pageable pageable);
-    Page<Task> findByUserAndTitleContainingIgnoreCaseAndClientIdAndStatus(User user, String title, Long clientId, Task.TaskStatus status, Pageable pageable);
     boolean existsByClient(Client client);
     List<Task> findByUserAndDeadlineAfter(User user, LocalDateTime deadline);
     long countByUser(User user);
 
-}
\ No newline at end of file
+    // Billable, visible client tasks that no issued invoice covers yet
+    @Query("select t from Task t where t.user = :user and t.billable = true and t.hidden = false and t.client is not null " +
+            "and not exists (select 1 from IssuedInvoice i where i.user = :user and array_contains(i.taskIds, t.id))")
+    List<Task> findUninvoiced(@Param("user") User user);
+
+    @Query("select max(t.orderIndex) from Task t where t.user = :user and t.status = :status")
+    Integer findMaxOrderIndex(@Param("user") User user, @Param("status") Task.TaskStatus status);
+
+    @Query("select t.orderIndex from Task t where t.id = :id and t.user = :user and t.status = :status")
+    Integer findOrderIndex(@Param("id") Long id, @Param("user") User user, @Param("status") Task.TaskStatus status);
+
+    @Query("select t.id from Task t where t.user = :user and t.status = :status order by t.orderIndex, t.id")
+    List<Long> findIdsInColumnOrder(@Param("user") User user, @Param("status") Task.TaskStatus status);
+
+    // Reporting aggregates over raw tasks, grouped in the database so only (label, value) rows are returned.
+    // Used for the partial month at the start of a range; whole months are read from TaskRollupRepository.
+    @Query("select c.name as label, count(t) as value from Task t join t.client c " +
+            "where t.user = :user and t.deadline > :start and t.deadline < :end group by c.name")
+    List<ReportRow> countTasksPerClient(@Param("user") User user, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select c.name as label, " +
+            "sum(case when t.billingType = :fixed then t.fixedAmount else t.hoursWorked * t.hourlyRate end) as value " +
+            "from Task t join t.client c " +
+            "where t.user = :user and t.deadline > :start and t.deadline < :end and t.billable = true group by c.name")
+    List<ReportRow> sumRevenuePerClient(@Param("user") User user, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                        @Param("fixed") Task.BillingType fixed);
+
+    @Query("select year(t.deadline) * 100 + month(t.deadline) as yearMonth, count(t) as value from Task t " +
+            "where t.user = :user and t.deadline > :start and t.deadline < :end " +
+            "group by year(t.deadline) * 100 + month(t.deadline) order by year(t.deadline) * 100 + month(t.deadline)")
+    List<MonthlyReportRow> countTasksPerMonth(@Param("user") User user, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select year(t.deadline) * 100 + month(t.deadline) as yearMonth, " +
+            "sum(case when t.billingType = :fixed then t.fixedAmount else t.hoursWorked * t.hourlyRate end) as value " +
+            "from Task t where t.user = :user and t.deadline > :start and t.deadline < :end and t.billable = true " +
+            "group by year(t.deadline) * 100 + month(t.deadline) order by year(t.deadline) * 100 + month(t.deadline)")
+    List<MonthlyReportRow> sumRevenuePerMonth(@Param("user") User user, @Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                              @Param("fixed") Task.BillingType fixed);
+}
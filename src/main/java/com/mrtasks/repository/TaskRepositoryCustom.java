@@ -0,0 +1,25 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.User;
+import com.mrtasks.repository.projection.TaskSearchHit;
+
+import java.util.List;
+
+public interface TaskRepositoryCustom {
+    /**
+     * Sets orderIndex to each task's position in {@code taskIds} times {@code spacing} with a single UPDATE,
+     * limited to the user's tasks in the given status column. Returns the number of rows updated.
+     */
+    int updateOrderIndexes(User user, Task.TaskStatus status, List<Long> taskIds, int spacing);
+
+    /**
+     * Ranked search over the user's tasks: words prefix-match the title and description through the
+     * {@code search_vector} GIN index, and the whole query also matches title substrings and near-misses through
+     * the trigram index. Returns hits best first, continuing after {@code after} when it is not null.
+     */
+    List<TaskSearchHit> searchTasks(User user, String query, Long clientId, Task.TaskStatus status,
+                                    TaskSearchHit after, int limit);
+
+    long countSearchTasks(User user, String query, Long clientId, Task.TaskStatus status);
+}
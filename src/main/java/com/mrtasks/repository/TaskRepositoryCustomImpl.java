@@ -0,0 +1,125 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.User;
+import com.mrtasks.repository.projection.TaskSearchHit;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class TaskRepositoryCustomImpl implements TaskRepositoryCustom {
+
+    // 'simple' only lowercases, so the same index serves every language the app is used in
+    private static final String TS_CONFIG = "'simple'";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public int updateOrderIndexes(User user, Task.TaskStatus status, List<Long> taskIds, int spacing) {
+        if (taskIds.isEmpty()) {
+            return 0;
+        }
+
+        // update tasks ... from (values (id, index), ...) so the whole column is rewritten in one round trip
+        StringBuilder sql = new StringBuilder("update tasks t set order_index = v.order_index from (values ");
+        for (int i = 0; i < taskIds.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(?").append(2 * i + 1).append(", ?").append(2 * i + 2).append(")");
+        }
+        int userParam = 2 * taskIds.size() + 1;
+        sql.append(") as v(id, order_index) where t.id = v.id and t.user_id = ?").append(userParam)
+                .append(" and t.status = ?").append(userParam + 1);
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < taskIds.size(); i++) {
+            query.setParameter(2 * i + 1, taskIds.get(i));
+            query.setParameter(2 * i + 2, i * spacing);
+        }
+        query.setParameter(userParam, user.getId());
+        query.setParameter(userParam + 1, status.name());
+        return query.executeUpdate();
+    }
+
+    @Override
+    public List<TaskSearchHit> searchTasks(User user, String query, Long clientId, Task.TaskStatus status,
+                                           TaskSearchHit after, int limit) {
+        Map<String, Object> params = new HashMap<>();
+        String prefixQuery = prefixQuery(query);
+        StringBuilder rank = new StringBuilder("coalesce(word_similarity(:query, t.title), 0)");
+        if (prefixQuery != null) {
+            rank.append(" + ts_rank(t.search_vector, to_tsquery(").append(TS_CONFIG).append(", :prefixQuery))");
+        }
+
+        StringBuilder sql = new StringBuilder("select s.id, s.rank from (select t.id, cast(")
+                .append(rank).append(" as float8) as rank from tasks t");
+        appendSearchConditions(sql, params, user, query, prefixQuery, clientId, status);
+        sql.append(") s");
+        if (after != null) {
+            sql.append(" where s.rank < :afterRank or (s.rank = :afterRank and s.id > :afterId)");
+            params.put("afterRank", after.rank());
+            params.put("afterId", after.id());
+        }
+        sql.append(" order by s.rank desc, s.id limit :limit");
+        params.put("limit", limit);
+
+        Query nativeQuery = entityManager.createNativeQuery(sql.toString());
+        params.forEach(nativeQuery::setParameter);
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = nativeQuery.getResultList();
+        return rows.stream()
+                .map(row -> new TaskSearchHit(((Number) row[0]).longValue(), ((Number) row[1]).doubleValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long countSearchTasks(User user, String query, Long clientId, Task.TaskStatus status) {
+        Map<String, Object> params = new HashMap<>();
+        StringBuilder sql = new StringBuilder("select count(*) from tasks t");
+        appendSearchConditions(sql, params, user, query, prefixQuery(query), clientId, status);
+
+        Query nativeQuery = entityManager.createNativeQuery(sql.toString());
+        params.forEach(nativeQuery::setParameter);
+        return ((Number) nativeQuery.getSingleResult()).longValue();
+    }
+
+    private static void appendSearchConditions(StringBuilder sql, Map<String, Object> params, User user, String query,
+                                               String prefixQuery, Long clientId, Task.TaskStatus status) {
+        sql.append(" where t.user_id = :userId");
+        params.put("userId", user.getId());
+        if (clientId != null) {
+            sql.append(" and t.client_id = :clientId");
+            params.put("clientId", clientId);
+        }
+        if (status != null) {
+            sql.append(" and t.status = :status");
+            params.put("status", status.name());
+        }
+        // Each alternative can use an index: the tsvector GIN index, or the trigram index on title for ILIKE and <%
+        sql.append(" and (t.title ilike :pattern or :query <% t.title");
+        if (prefixQuery != null) {
+            sql.append(" or t.search_vector @@ to_tsquery(").append(TS_CONFIG).append(", :prefixQuery)");
+            params.put("prefixQuery", prefixQuery);
+        }
+        sql.append(")");
+        params.put("query", query);
+        params.put("pattern", "%" + query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+    }
+
+    // "inv pay" -> "inv:* & pay:*"; only letters and digits are kept, so the result is always valid tsquery syntax
+    private static String prefixQuery(String query) {
+        String prefixQuery = Arrays.stream(query.split("[^\\p{L}\\p{N}]+"))
+                .filter(word -> !word.isEmpty())
+                .map(word -> word + ":*")
+                .collect(Collectors.joining(" & "));
+        return prefixQuery.isEmpty() ? null : prefixQuery;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.TaskRollup;
+import com.mrtasks.model.User;
+import com.mrtasks.repository.projection.MonthlyReportRow;
+import com.mrtasks.repository.projection.ReportRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface TaskRollupRepository extends JpaRepository<TaskRollup, Long> {
+
+    /**
+     * Adds to the rollup row for the key, creating it if there is none. One statement, so concurrent saves to the
+     * same month add up instead of racing to insert the row.
+     */
+    @Modifying
+    @Query(value = "insert into task_rollups (user_id, client_id, year_month, billable, task_count, total_amount, remaining_due) " +
+            "values (:userId, :clientId, :yearMonth, :billable, :taskCount, :totalAmount, :remainingDue) " +
+            "on conflict (user_id, coalesce(client_id, 0), year_month, billable) do update set " +
+            "task_count = task_rollups.task_count + excluded.task_count, " +
+            "total_amount = task_rollups.total_amount + excluded.total_amount, " +
+            "remaining_due = task_rollups.remaining_due + excluded.remaining_due", nativeQuery = true)
+    void add(@Param("userId") Long userId, @Param("clientId") Long clientId, @Param("yearMonth") int yearMonth,
+             @Param("billable") boolean billable, @Param("taskCount") long taskCount,
+             @Param("totalAmount") double totalAmount, @Param("remainingDue") double remainingDue);
+
+    @Modifying
+    @Query(value = "delete from task_rollups where user_id = :userId and coalesce(client_id, 0) = coalesce(:clientId, 0) " +
+            "and year_month = :yearMonth and billable = :billable and task_count <= 0", nativeQuery = true)
+    void deleteIfEmpty(@Param("userId") Long userId, @Param("clientId") Long clientId, @Param("yearMonth") int yearMonth,
+                       @Param("billable") boolean billable);
+
+    @Modifying
+    @Query("insert into TaskRollup (user, client, yearMonth, billable, taskCount, totalAmount, remainingDue) " +
+            "select t.user, c, year(t.deadline) * 100 + month(t.deadline), t.billable, count(t), " +
+            "sum(case when t.billable = false then 0 when t.billingType = :fixed then t.fixedAmount else t.hoursWorked * t.hourlyRate end), " +
+            "sum(case when t.billable = false then 0 when t.billingType = :fixed then t.fixedAmount - t.advancePayment " +
+            "else t.hoursWorked * t.hourlyRate - t.advancePayment end) " +
+            "from Task t left join t.client c where t.deadline is not null " +
+            "group by t.user, c, year(t.deadline) * 100 + month(t.deadline), t.billable")
+    int insertFromTasks(@Param("fixed") Task.BillingType fixed);
+
+    @Query("select c.name as label, sum(r.taskCount) as value from TaskRollup r join r.client c " +
+            "where r.user = :user and r.yearMonth >= :fromYearMonth group by c.name")
+    List<ReportRow> countTasksPerClient(@Param("user") User user, @Param("fromYearMonth") int fromYearMonth);
+
+    @Query("select c.name as label, sum(r.totalAmount) as value from TaskRollup r join r.client c " +
+            "where r.user = :user and r.yearMonth >= :fromYearMonth and r.billable = true group by c.name")
+    List<ReportRow> sumRevenuePerClient(@Param("user") User user, @Param("fromYearMonth") int fromYearMonth);
+
+    @Query("select r.yearMonth as yearMonth, sum(r.taskCount) as value from TaskRollup r " +
+            "where r.user = :user and r.yearMonth >= :fromYearMonth group by r.yearMonth order by r.yearMonth")
+    List<MonthlyReportRow> countTasksPerMonth(@Param("user") User user, @Param("fromYearMonth") int fromYearMonth);
+
+    @Query("select r.yearMonth as yearMonth, sum(r.totalAmount) as value from TaskRollup r " +
+            "where r.user = :user and r.yearMonth >= :fromYearMonth and r.billable = true " +
+            "group by r.yearMonth order by r.yearMonth")
+    List<MonthlyReportRow> sumRevenuePerMonth(@Param("user") User user, @Param("fromYearMonth") int fromYearMonth);
+}
@@ -0,0 +1,69 @@
+package com.mrtasks.repository;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.User;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+
+/**
+ * Building blocks for task listings, combined with {@link Specification#and}.
+ */
+public final class TaskSpecifications {
+
+    private TaskSpecifications() {
+    }
+
+    public static Specification<Task> ownedBy(User user) {
+        return (root, query, cb) -> cb.equal(root.get("user"), user);
+    }
+
+    public static Specification<Task> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+
+    public static Specification<Task> forClient(Long clientId) {
+        return (root, query, cb) -> cb.equal(root.get("client").get("id"), clientId);
+    }
+
+    public static Specification<Task> withStatus(Task.TaskStatus status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    /**
+     * Keyset (seek) condition: tasks strictly after the given position in ({@code attribute}, id) order, both
+     * ascending or both descending. Nulls sort as Postgres puts them by default, last when ascending and first
+     * when descending. The redundant bound on the key lets the (user_id, key, id) index start at the position.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Task> after(String attribute, Comparable value, long id, boolean descending, boolean nullable) {
+        return (root, query, cb) -> {
+            Path<Comparable> key = root.get(attribute);
+            Path<Long> taskId = root.get("id");
+            if (descending) {
+                if (value == null) {
+                    return cb.or(cb.isNotNull(key), cb.lessThan(taskId, id));
+                }
+                return cb.and(cb.lessThanOrEqualTo(key, value), cb.or(cb.lessThan(key, value), cb.lessThan(taskId, id)));
+            }
+            if (value == null) {
+                return cb.and(cb.isNull(key), cb.greaterThan(taskId, id));
+            }
+            Predicate seek = cb.and(cb.greaterThanOrEqualTo(key, value), cb.or(cb.greaterThan(key, value), cb.greaterThan(taskId, id)));
+            return nullable ? cb.or(seek, cb.isNull(key)) : seek;
+        };
+    }
+
+    // Loads each task's client in the same query instead of one select per client
+    public static Specification<Task> fetchClient() {
+        return (root, query, cb) -> {
+            if (query.getResultType() != Long.class && query.getResultType() != long.class) {
+                root.fetch("client", JoinType.LEFT);
+            }
+            return null;
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package com.mrtasks.repository.projection;
+
+public interface MonthlyReportRow {
+    // Encoded as yyyyMM, e.g. 202504
+    Integer getYearMonth();
+    Number getValue();
+}
@@ -0,0 +1,6 @@
+package com.mrtasks.repository.projection;
+
+public interface ReportRow {
+    String getLabel();
+    Number getValue();
+}
@@ -0,0 +1,7 @@
+package com.mrtasks.repository.projection;
+
+/**
+ * A task matched by a ranked search, identified by id with its relevance; also a position to continue after.
+ */
+public record TaskSearchHit(Long id, double rank) {
+}
@@ -1,49 +1,65 @@
 package com.mrtasks.service;
 
+import com.mrtasks.model.EmailOutbox;
+import com.mrtasks.model.RateLimitViolation;
+import com.mrtasks.repository.EmailOutboxRepository;
+import com.mrtasks.service.mail.EmailOutboxMetrics;
+import com.mrtasks.service.mail.EmailTemplates;
+import com.mrtasks.service.mail.EmailTemplates.RenderedEmail;
+import com.mrtasks.service.mail.EmailTemplates.Template;
+import com.mrtasks.service.mail.SmtpTransportPool;
 import com.mrtasks.utils.UrlUtils;
+import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.MessageSource;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.activation.DataSource;
 import jakarta.mail.util.ByteArrayDataSource;
 
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 public class EmailService {
 
+    private static final Duration DEDUPE_WINDOW = Duration.ofMinutes(10);
+
     private final JavaMailSender mailSender;
+    private final SmtpTransportPool smtpTransportPool;
     private final MessageSource messageSource;
+    private final EmailTemplates emailTemplates;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailOutboxMetrics outboxMetrics;
 
     public void sendVerificationEmail(String to, String token, String language) {
         language = StringUtils.hasText(language) ? language : "en";
         String baseUrl = UrlUtils.getBaseUrl();
 
         try {
-            String verificationLink = baseUrl + "/email-verify?token=" + token + "&lang=" + language;
-            String subject = messageSource.getMessage("email.verification.subject", null, Locale.forLanguageTag(language));
-            String htmlBody = "<h3>" + subject + "</h3>" +
-                    "<p>" + messageSource.getMessage("email.verification.body", null, Locale.forLanguageTag(language)) + "</p>" +
-                    "<p><a href=\"" + verificationLink + "\">" + verificationLink + "</a></p>" +
-                    "<p>" + messageSource.getMessage("email.verification.footer", null, Locale.forLanguageTag(language)) + "</p>";
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true); // true for HTML
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlBody, true); // true indicates HTML
-            helper.setFrom("no-reply@mrtasks.com");
-            helper.setReplyTo("support@mrtasks.com");
-
-            mailSender.send(message);
+            String verificationLink = baseUrl + "/email-verify?token=" + encode(token) + "&lang=" + encode(language);
+            RenderedEmail email = emailTemplates.render(Template.VERIFICATION, language, Map.of("link", verificationLink));
+
+            enqueue(to, "no-reply@mrtasks.com", "support@mrtasks.com", email.subject(), email.html(), true, null, null, null, null);
         } catch (Exception e) {
             throw new RuntimeException("Failed to send verification email to " + to, e);
         }
@@ -54,43 +70,24 @@ public class EmailService {
         String baseUrl = UrlUtils.getBaseUrl();
 
         try {
-            String resetLink = baseUrl + "/reset-password?token=" + token;
-            String subject = messageSource.getMessage("email.reset.subject", null, Locale.forLanguageTag(language));
-            String htmlBody = "<h3>" + subject + "</h3>" +
-                    "<p>" + messageSource.getMessage("email.reset.body", null, Locale.forLanguageTag(language)) + "</p>" +
-                    "<p><a href=\"" + resetLink + "\">" + resetLink + "</a></p>" +
-                    "<p>" + messageSource.getMessage("email.reset.footer", null, Locale.forLanguageTag(language)) + "</p>";
-
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlBody, true);
-            helper.setFrom("no-reply@mrtasks.com");
-            helper.setReplyTo("support@mrtasks.com");
-
-            mailSender.send(message);
+            String resetLink = baseUrl + "/reset-password?token=" + encode(token);
+            RenderedEmail email = emailTemplates.render(Template.PASSWORD_RESET, language, Map.of("link", resetLink));
+
+            enqueue(to, "no-reply@mrtasks.com", "support@mrtasks.com", email.subject(), email.html(), true, null, null, null, null);
         } catch (Exception e) {
             throw new RuntimeException("Failed to send password reset email to " + to, e);
         }
     }
 
-    public void sendLogEmail(List<String> logs, String date) {
+    public void sendLogEmail(List<RateLimitViolation> logs, String date) {
         try {
             // Create CSV content
             StringBuilder csvContent = new StringBuilder();
             csvContent.append("Timestamp,Username,IPAddress,Action\n");
-            for (String log : logs) {
-                // Parse log: "2025-04-14T12:34:56: User testuser, IP 1.2.3.4 hit dashboard limit"
-                String[] parts = log.split(": User |, IP | hit ");
-                if (parts.length == 4) {
-                    String timestamp = parts[0].trim();
-                    String username = parts[1].trim();
-                    String ipAddress = parts[2].trim();
-                    String action = parts[3].replace(" limit", "").trim();
-                    csvContent.append(String.format("\"%s\",\"%s\",\"%s\",\"%s\"\n",
-                            timestamp, username, ipAddress, action));
-                }
+            for (RateLimitViolation log : logs) {
+                LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(log.timestamp()), ZoneId.systemDefault());
+                csvContent.append(String.format("\"%s\",\"%s\",\"%s\",\"%s\"\n",
+                        timestamp, log.username(), log.ipAddress() != null ? log.ipAddress() : "unknown", log.action().getLabel()));
             }
 
             // Prepare email
@@ -100,53 +97,150 @@ public class EmailService {
                     "<p>Total violations: " + logs.size() + "</p>" +
                     "<p>Please review the attached file for details.</p>";
 
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-            helper.setTo("support@mrtasks.com");
-            helper.setSubject(subject);
-            helper.setText(htmlBody, true);
-            helper.setFrom("limit-violation@mrtasks.com");
-
             // Attach CSV
-            DataSource dataSource = new ByteArrayDataSource(csvContent.toString().getBytes(StandardCharsets.UTF_8), "text/csv");
-            helper.addAttachment("rate_limit_violations_" + date + ".csv", dataSource);
-
-            mailSender.send(message);
+            enqueue("support@mrtasks.com", "limit-violation@mrtasks.com", null, subject, htmlBody, true,
+                    "rate_limit_violations_" + date + ".csv", "text/csv", csvContent.toString().getBytes(StandardCharsets.UTF_8), null);
         } catch (Exception e) {
-            // Log error instead of throwing to avoid scheduler crash
-            System.err.println("Failed to send log email for " + date + ": " + e.getMessage());
+            throw new RuntimeException("Failed to send log email for " + date, e);
         }
     }
 
-    public void sendInvoiceEmail(String recipientEmail, byte[] invoicePdf, String name, String language, String userEmail) {
-        MimeMessage message = mailSender.createMimeMessage();
-
+    /**
+     * Queues the invoice for the recipient. Returns {@code false}, queuing nothing, if the same tasks were already
+     * queued for them within the last {@link #DEDUPE_WINDOW}. Concurrent sends of the same invoice are serialised
+     * on its dedupe key, so only one of them is queued.
+     */
+    @Transactional
+    public boolean sendInvoiceEmail(String recipientEmail, byte[] invoicePdf, String name, String language, String userEmail, List<Long> taskIds) {
         try {
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
-            helper.setTo(recipientEmail);
-
-            String subject = messageSource.getMessage(
-                    "email.invoice.subject",
-                    new Object[]{name},
-                    Locale.forLanguageTag(language));
+            String subject = invoiceSubject(name, language);
+            emailOutboxRepository.lockDedupeKey(dedupeKey(recipientEmail, subject, invoiceDedupeDiscriminator(taskIds)));
 
             String text = messageSource.getMessage(
                     "email.invoice.text",
                     null,
                     Locale.forLanguageTag(language));
 
-            helper.setSubject(subject);
-            helper.setText(text, false);
-            helper.setFrom("invoices@mrtasks.com");
-            helper.setReplyTo(userEmail);
-
             // Add the PDF attachment
-            ByteArrayDataSource dataSource = new ByteArrayDataSource(invoicePdf, "application/pdf");
-            helper.addAttachment("invoice.pdf", dataSource);
-
-            mailSender.send(message);
+            return enqueue(recipientEmail, "invoices@mrtasks.com", userEmail, subject, text, false,
+                    "invoice.pdf", "application/pdf", invoicePdf, invoiceDedupeDiscriminator(taskIds));
         } catch (Exception e) {
             throw new RuntimeException("Failed to send invoice email", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether {@link #sendInvoiceEmail} would drop this invoice as a repeat, so callers can say so before
+     * rendering it.
+     */
+    public boolean isInvoiceEmailQueued(String recipientEmail, String name, String language, List<Long> taskIds) {
+        String dedupeKey = dedupeKey(recipientEmail, invoiceSubject(name, language), invoiceDedupeDiscriminator(taskIds));
+        return emailOutboxRepository.existsByDedupeKeyAndCreatedAtAfter(dedupeKey, LocalDateTime.now().minus(DEDUPE_WINDOW));
+    }
+
+    /**
+     * Locks this invoice email's dedupe key until the caller's transaction ends, then returns whether it can
+     * still be sent. A concurrent send of the same invoice waits here until the first one commits, and then
+     * finds it queued.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean claimInvoiceEmail(String recipientEmail, String name, String language, List<Long> taskIds) {
+        String dedupeKey = dedupeKey(recipientEmail, invoiceSubject(name, language), invoiceDedupeDiscriminator(taskIds));
+        emailOutboxRepository.lockDedupeKey(dedupeKey);
+        return !emailOutboxRepository.existsByDedupeKeyAndCreatedAtAfter(dedupeKey, LocalDateTime.now().minus(DEDUPE_WINDOW));
+    }
+
+    /**
+     * Sends the emails over a single SMTP connection. Returns one entry per email, in order: {@code null} if it
+     * was sent, otherwise the failure.
+     */
+    public List<Exception> deliverAll(List<EmailOutbox> emails) {
+        List<Exception> results = new ArrayList<>(Collections.nCopies(emails.size(), null));
+        List<MimeMessage> messages = new ArrayList<>(emails.size());
+        List<Integer> positions = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            try {
+                messages.add(toMimeMessage(emails.get(i)));
+                positions.add(i);
+            } catch (MessagingException e) {
+                results.set(i, e);
+            }
+        }
+        List<MessagingException> sendResults = smtpTransportPool.sendAll(messages);
+        for (int i = 0; i < sendResults.size(); i++) {
+            results.set(positions.get(i), sendResults.get(i));
+        }
+        return results;
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, email.getAttachment() != null, "UTF-8");
+        helper.setTo(email.getRecipient());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody(), email.isHtml());
+        helper.setFrom(email.getFrom());
+        if (email.getReplyTo() != null) {
+            helper.setReplyTo(email.getReplyTo());
+        }
+        if (email.getAttachment() != null) {
+            DataSource dataSource = new ByteArrayDataSource(email.getAttachment(), email.getAttachmentType());
+            helper.addAttachment(email.getAttachmentName(), dataSource);
+        }
+        return message;
+    }
+
+    // Writes the message to the outbox, joining the caller's transaction if there is one. Returns false, writing
+    // nothing, if the same message was queued within the dedupe window
+    private boolean enqueue(String to, String from, String replyTo, String subject, String body, boolean html,
+                            String attachmentName, String attachmentType, byte[] attachment, String dedupeDiscriminator) {
+        LocalDateTime now = LocalDateTime.now();
+        String dedupeKey = dedupeKey(to, subject, dedupeDiscriminator != null ? dedupeDiscriminator : body);
+        if (emailOutboxRepository.existsByDedupeKeyAndCreatedAtAfter(dedupeKey, now.minus(DEDUPE_WINDOW))) {
+            outboxMetrics.recordDeduplicated();
+            return false;
+        }
+
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(to);
+        email.setFrom(from);
+        email.setReplyTo(replyTo);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setHtml(html);
+        email.setAttachmentName(attachmentName);
+        email.setAttachmentType(attachmentType);
+        email.setAttachment(attachment);
+        email.setDedupeKey(dedupeKey);
+        email.setCreatedAt(now);
+        email.setNextAttemptAt(now);
+        emailOutboxRepository.save(email);
+        return true;
+    }
+
+    private String invoiceSubject(String name, String language) {
+        return messageSource.getMessage("email.invoice.subject", new Object[]{name}, Locale.forLanguageTag(language));
+    }
+
+    // Every render differs (invoice number, timestamps), so a repeated send is recognised by its tasks
+    private static String invoiceDedupeDiscriminator(List<Long> taskIds) {
+        return "invoice:" + taskIds.stream().sorted().toList();
+    }
+
+    private static String dedupeKey(String to, String subject, String discriminator) {
+        return sha256(to + "\n" + subject + "\n" + discriminator);
+    }
+
+    private static String encode(String queryValue) {
+        return URLEncoder.encode(queryValue, StandardCharsets.UTF_8);
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -4,24 +4,33 @@ import com.lowagie.text.*;
 import com.lowagie.text.pdf.PdfPCell;
 import com.lowagie.text.pdf.PdfPTable;
 import com.lowagie.text.pdf.PdfWriter;
-import com.lowagie.text.pdf.BaseFont;
 import com.mrtasks.model.Client;
+import com.mrtasks.model.IssuedInvoice;
 import com.mrtasks.model.Task;
 import com.mrtasks.model.User;
 import com.mrtasks.model.UserProfile;
+import com.mrtasks.repository.IssuedInvoiceRepository;
 import com.mrtasks.repository.TaskRepository;
 import com.mrtasks.repository.UserProfileRepository;
+import com.mrtasks.service.invoice.InvoiceArchiveStore;
+import com.mrtasks.service.invoice.InvoiceCache;
+import com.mrtasks.service.invoice.InvoiceNumberAllocator;
+import com.mrtasks.service.invoice.InvoiceRenderingContext;
+import com.mrtasks.service.invoice.LogoCache;
 import com.mrtasks.utils.CurrencySymbolUtil;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import java.awt.Color;
 import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
 
@@ -29,10 +38,42 @@ import java.util.List;
 @RequiredArgsConstructor
 public class InvoiceService {
 
+    // Rows are flushed to the writer in chunks of this size, so a large selection never sits in one table
+    private static final int TASK_ROWS_PER_FLUSH = 50;
+
     private final TaskRepository taskRepository;
     private final UserProfileRepository userProfileRepository;
+    private final InvoiceRenderingContext renderingContext;
+    private final LogoCache logoCache;
+    private final InvoiceCache invoiceCache;
+    private final InvoiceArchiveStore invoiceArchiveStore;
+    private final InvoiceNumberAllocator invoiceNumberAllocator;
+    private final IssuedInvoiceRepository issuedInvoiceRepository;
+    private final EmailService emailService;
+
+    /**
+     * The data an invoice is rendered from. Loaded up front so that validation errors surface before any
+     * output is written, and rendering needs no persistence context. The fingerprint identifies the rendered
+     * content and keys the invoice cache.
+     */
+    public record PreparedInvoice(List<Task> tasks, UserProfile profile, String invoiceTo, String fingerprint) {
+    }
+
+    /**
+     * Issues the invoice and queues it for the recipient in one transaction. Returns {@code false}, issuing
+     * nothing, if the same invoice was already queued for them; a concurrent send of it waits for this one.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean emailInvoice(User user, List<Long> taskIds, String recipientEmail, UserProfile profile) throws DocumentException, IOException {
+        if (!emailService.claimInvoiceEmail(recipientEmail, profile.getCompanyName(), profile.getLanguage(), taskIds)) {
+            return false;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInvoice(prepareInvoice(user, taskIds), out);
+        return emailService.sendInvoiceEmail(recipientEmail, out.toByteArray(), profile.getCompanyName(), profile.getLanguage(), profile.getEmail(), taskIds);
+    }
 
-    public byte[] generateInvoice(User user, List<Long> taskIds) throws Exception {
+    public PreparedInvoice prepareInvoice(User user, List<Long> taskIds) {
         List<Task> selectedTasks = taskRepository.findByUserAndIdIn(user, taskIds)
                 .stream()
                 .filter(Task::isBillable)
@@ -42,6 +83,14 @@ public class InvoiceService {
             throw new IllegalStateException("No billable tasks selected.");
         }
 
+        Optional<UserProfile> profileOpt = userProfileRepository.findByUser(user);
+        return prepareInvoice(selectedTasks, profileOpt.orElse(new UserProfile()));
+    }
+
+    /**
+     * Prepares an invoice from tasks that are already loaded and known to belong to the profile's user.
+     */
+    public PreparedInvoice prepareInvoice(List<Task> selectedTasks, UserProfile profile) {
         String invoiceTo = selectedTasks.stream()
                         .map(Task::getClient)
                         .filter(Objects::nonNull)
@@ -49,35 +98,95 @@ public class InvoiceService {
                         .findFirst()
                         .orElse("");
 
-        Optional<UserProfile> profileOpt = userProfileRepository.findByUser(user);
-        UserProfile profile = profileOpt.orElse(new UserProfile());
+        return new PreparedInvoice(selectedTasks, profile, invoiceTo, fingerprint(selectedTasks, profile, invoiceTo));
+    }
+
+    /**
+     * Writes the invoice to {@code out}, from the cache if the same content was rendered before, keeping its
+     * invoice number. Otherwise a new number is issued, and the invoice is rendered straight into {@code out},
+     * pages written as they fill up, while being copied to the archive. Once complete it is cached and recorded
+     * with its client, totals and task ids.
+     */
+    public void writeInvoice(PreparedInvoice invoice, OutputStream out) throws DocumentException, IOException {
+        Optional<byte[]> cached = invoiceCache.get(invoice.fingerprint());
+        if (cached.isPresent()) {
+            out.write(cached.get());
+            return;
+        }
+        User user = invoice.tasks().getFirst().getUser();
+        long number = invoiceNumberAllocator.next(user.getId());
+        LocalDateTime issuedAt = LocalDateTime.now();
+        InvoiceArchiveStore.ArchivingOutputStream archiving = invoiceArchiveStore.archive(out);
+        InvoiceArchiveStore.StoredPdf stored;
+        try {
+            InvoiceCache.CapturingOutputStream capturing = invoiceCache.capture(invoice.fingerprint(), archiving);
+            renderInvoice(invoice, number, issuedAt, capturing);
+            stored = archiving.commit();
+            capturing.store();
+        } finally {
+            archiving.discard();
+        }
+
+        IssuedInvoice issued = new IssuedInvoice();
+        issued.setUser(user);
+        issued.setNumber(number);
+        invoice.tasks().stream()
+                .map(Task::getClient)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .ifPresent(client -> issued.setClientId(client.getId()));
+        issued.setClientName(invoice.invoiceTo());
+        issued.setTotal(invoice.tasks().stream().mapToDouble(Task::getTotal).sum());
+        issued.setAdvancePaid(invoice.tasks().stream().mapToDouble(Task::getAdvancePayment).sum());
+        issued.setAmountDue(invoice.tasks().stream().mapToDouble(Task::getRemainingDue).sum());
+        issued.setCurrency(invoice.profile().getCurrency());
+        issued.setTaskIds(invoice.tasks().stream().map(Task::getId).sorted().toList());
+        issued.setFingerprint(invoice.fingerprint());
+        issued.setContentHash(stored.contentHash());
+        issued.setSizeBytes(stored.size());
+        issued.setIssuedAt(issuedAt);
+        issuedInvoiceRepository.save(issued);
+    }
+
+    // Everything the PDF shows: each task's content (through updatedAt), the client name and the profile fields
+    private static String fingerprint(List<Task> tasks, UserProfile profile, String invoiceTo) {
+        StringBuilder content = new StringBuilder();
+        tasks.stream()
+                .sorted(Comparator.comparing(Task::getId))
+                .forEach(task -> content.append(task.getId()).append('@').append(task.getUpdatedAt()).append(','));
+        content.append('\n').append(invoiceTo)
+                .append('\n').append(profile.getCompanyName())
+                .append('\n').append(profile.getLogoUrl())
+                .append('\n').append(profile.getEmail())
+                .append('\n').append(profile.getPhone())
+                .append('\n').append(profile.getLanguage())
+                .append('\n').append(profile.getCurrency());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Package-private for InvoiceRenderingBenchmark
+    void renderInvoice(PreparedInvoice invoice, long number, LocalDateTime issuedAt, OutputStream out) throws DocumentException {
+        List<Task> selectedTasks = invoice.tasks();
+        UserProfile profile = invoice.profile();
+        String invoiceTo = invoice.invoiceTo();
         String sender = StringUtils.hasText(profile.getCompanyName()) ? profile.getCompanyName() : "";
 
         // Load the user's preferred language
-        String language = profile.getLanguage() != null ? profile.getLanguage() : "en";
-        Locale locale = Locale.forLanguageTag(language);
-        ResourceBundle messages = ResourceBundle.getBundle("messages", locale);
+        InvoiceRenderingContext.LocaleResources localeResources = renderingContext.forLanguage(profile.getLanguage());
+        ResourceBundle messages = localeResources.messages();
 
         Document document = new Document(PageSize.A4, 36, 36, 54, 36);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
         PdfWriter.getInstance(document, out);
         document.open();
 
-        BaseFont baseFont;
-        try (InputStream fontStream = new ClassPathResource("fonts/DejaVuSans.ttf").getInputStream()) {
-            byte[] fontBytes = fontStream.readAllBytes();
-            baseFont = BaseFont.createFont("DejaVuSans.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, fontBytes, null);
-        }
-        BaseFont boldBaseFont;
-        try (InputStream boldFontStream = new ClassPathResource("fonts/DejaVuSans-Bold.ttf").getInputStream()) {
-            byte[] boldFontBytes = boldFontStream.readAllBytes();
-            boldBaseFont = BaseFont.createFont("DejaVuSans-Bold.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, boldFontBytes, null);
-        }
-
-        Font headerFont = new Font(boldBaseFont, 16, Font.NORMAL, new Color(64, 64, 64)); // Dark gray
-        Font normalFont = new Font(baseFont, 10, Font.NORMAL, Color.BLACK);
-        Font boldFont = new Font(boldBaseFont, 10, Font.BOLD, Color.BLACK);
-        Font footerFont = new Font(baseFont, 9, Font.ITALIC, Color.GRAY);
+        Font normalFont = renderingContext.getNormalFont();
+        Font boldFont = renderingContext.getBoldFont();
+        Font footerFont = renderingContext.getFooterFont();
 
         // Header Section
         PdfPTable headerTable = new PdfPTable(2);
@@ -87,22 +196,18 @@ public class InvoiceService {
         PdfPCell logoCell = new PdfPCell();
         logoCell.setBorder(Rectangle.NO_BORDER);
         if (profile.getLogoUrl() != null && !profile.getLogoUrl().isEmpty()) {
-            try {
-                Image logo = Image.getInstance(profile.getLogoUrl());
-                logo.scaleToFit(100, 100);
-                logoCell.addElement(logo);
-            } catch (Exception e) {
-                logoCell.addElement(new Paragraph(messages.getString("invoice.logo.unavailable"), normalFont));
-            }
+            logoCache.getLogo(profile.getLogoUrl()).ifPresentOrElse(
+                    logoCell::addElement,
+                    () -> logoCell.addElement(new Paragraph(messages.getString("invoice.logo.unavailable"), normalFont)));
         }
         headerTable.addCell(logoCell);
 
         PdfPCell titleCell = new PdfPCell();
         titleCell.setBorder(Rectangle.NO_BORDER);
         titleCell.setVerticalAlignment(Element.ALIGN_TOP);
-        String invoiceNumber = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        String invoiceNumber = String.format(InvoiceRenderingContext.INVOICE_NUMBER_FORMAT, number);
         titleCell.addElement(new Paragraph(messages.getString("invoice.title") + invoiceNumber, normalFont));
-        titleCell.addElement(new Paragraph(messages.getString("invoice.date.label") + " " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd MMMM yyyy", locale)), normalFont));
+        titleCell.addElement(new Paragraph(messages.getString("invoice.date.label") + " " + issuedAt.format(localeResources.dateFormat()), normalFont));
         headerTable.addCell(titleCell);
 
         document.add(headerTable);
@@ -132,6 +237,8 @@ public class InvoiceService {
 
         // Task Table
         PdfPTable table = new PdfPTable(4);
+        table.setComplete(false);
+        table.setHeaderRows(1);
         table.setWidthPercentage(100);
         table.setWidths(new float[]{2.5f, 2f, 2f, 2f}); // Adjusted column widths
         table.getDefaultCell().setPadding(5);
@@ -154,6 +261,7 @@ public class InvoiceService {
         double grandAdvance = 0;
         double grandRemainingDue = 0;
         String currencySymbol = CurrencySymbolUtil.getSymbol(profile.getCurrency());
+        int rowsSinceFlush = 0;
         for (Task task : selectedTasks) {
             table.addCell(new PdfPCell(new Phrase(task.getTitle(), normalFont)));
 //            table.addCell(new PdfPCell(new Phrase(task.getDescription() != null ? task.getDescription() : "N/A", normalFont)));
@@ -165,7 +273,12 @@ public class InvoiceService {
             grandTotal += task.getTotal();
             grandAdvance += task.getAdvancePayment();
             grandRemainingDue += task.getRemainingDue();
+            if (++rowsSinceFlush == TASK_ROWS_PER_FLUSH) {
+                document.add(table);
+                rowsSinceFlush = 0;
+            }
         }
+        table.setComplete(true);
         document.add(table);
 
         // Totals Section
@@ -190,6 +303,5 @@ public class InvoiceService {
             document.add(footer);
         }
         document.close();
-        return out.toByteArray();
     }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.mrtasks.model.User;
 import com.mrtasks.model.UserSubscription;
 import com.mrtasks.repository.UserRepository;
 import com.mrtasks.repository.UserSubscriptionRepository;
+import com.mrtasks.service.cache.SubscriptionCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -16,13 +17,21 @@ public class PremiumService {
 
     private final UserSubscriptionRepository userSubscriptionRepository;
     private final UserRepository userRepository;
+    private final SubscriptionCache subscriptionCache;
 
     public boolean isPremiumUser(User user) {
-        Optional<UserSubscription> subscriptionOpt = userSubscriptionRepository.findByUser(user);
+        Optional<UserSubscription> subscriptionOpt = getSubscription(user);
         return subscriptionOpt.map(sub -> sub.isPremium() && (sub.getExpiresAt() == null || sub.getExpiresAt().isAfter(LocalDateTime.now())))
                 .orElse(false);
     }
 
+    /**
+     * Returns a cached, read-only snapshot of the user's subscription.
+     */
+    public Optional<UserSubscription> getSubscription(User user) {
+        return subscriptionCache.get(user.getId(), () -> userSubscriptionRepository.findByUser(user));
+    }
+
     public void upgradeToPremiumFromAdmin(User user, int months) {
         Optional<UserSubscription> existing = userSubscriptionRepository.findByUser(user);
         UserSubscription subscription = existing.orElse(new UserSubscription());
@@ -31,6 +40,7 @@ public class PremiumService {
         subscription.setExpiresAt(LocalDateTime.now().plusMonths(months));
         subscription.setLastUpdated(LocalDateTime.now());
         userSubscriptionRepository.save(subscription);
+        evict(user);
     }
 
     public void upgradeToPremium(Long userId, int months) {
@@ -48,6 +58,7 @@ public class PremiumService {
         subscription.setLastUpdated(LocalDateTime.now());
 
         userSubscriptionRepository.save(subscription);
+        evict(user);
     }
 
     public void downgradeFromPremium(User user) {
@@ -58,10 +69,14 @@ public class PremiumService {
             subscription.setLastUpdated(LocalDateTime.now());
             userSubscriptionRepository.save(subscription);
         });
+        evict(user);
     }
 
     public LocalDateTime getExpirationDate(User user) {
-        Optional<UserSubscription> subscription = userSubscriptionRepository.findByUser(user);
-        return subscription.map(UserSubscription::getExpiresAt).orElse(null);
+        return getSubscription(user).map(UserSubscription::getExpiresAt).orElse(null);
+    }
+
+    private void evict(User user) {
+        subscriptionCache.evict(user.getId());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package com.mrtasks.service;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.User;
+import com.mrtasks.model.dto.ChartDataDto;
+import com.mrtasks.repository.TaskRepository;
+import com.mrtasks.repository.TaskRollupRepository;
+import com.mrtasks.repository.projection.MonthlyReportRow;
+import com.mrtasks.repository.projection.ReportRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Builds the reporting charts. Whole months come from the task_rollups table; the partial month a range
+ * starts in is aggregated from raw tasks so results match a plain "deadline after start" filter.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportingService {
+
+    private final TaskRepository taskRepository;
+    private final TaskRollupRepository taskRollupRepository;
+
+    public ChartDataDto getTasksPerClient(User user, String range) {
+        LocalDateTime start = getRangeStart(range);
+        LocalDateTime boundary = getFirstWholeMonth(start);
+        Map<String, Number> values = new LinkedHashMap<>();
+        merge(values, taskRepository.countTasksPerClient(user, start, boundary));
+        merge(values, taskRollupRepository.countTasksPerClient(user, toYearMonth(boundary)));
+        return toChartData(values);
+    }
+
+    public ChartDataDto getRevenuePerClient(User user, String range) {
+        LocalDateTime start = getRangeStart(range);
+        LocalDateTime boundary = getFirstWholeMonth(start);
+        Map<String, Number> values = new LinkedHashMap<>();
+        merge(values, taskRepository.sumRevenuePerClient(user, start, boundary, Task.BillingType.FIXED));
+        merge(values, taskRollupRepository.sumRevenuePerClient(user, toYearMonth(boundary)));
+        return toChartData(values);
+    }
+
+    public ChartDataDto getTasksPerMonth(User user, String range) {
+        LocalDateTime start = getRangeStart(range);
+        LocalDateTime boundary = getFirstWholeMonth(start);
+        Map<String, Number> values = new LinkedHashMap<>();
+        mergeMonthly(values, taskRepository.countTasksPerMonth(user, start, boundary));
+        mergeMonthly(values, taskRollupRepository.countTasksPerMonth(user, toYearMonth(boundary)));
+        return toChartData(values);
+    }
+
+    public ChartDataDto getRevenuePerMonth(User user, String range) {
+        LocalDateTime start = getRangeStart(range);
+        LocalDateTime boundary = getFirstWholeMonth(start);
+        Map<String, Number> values = new LinkedHashMap<>();
+        mergeMonthly(values, taskRepository.sumRevenuePerMonth(user, start, boundary, Task.BillingType.FIXED));
+        mergeMonthly(values, taskRollupRepository.sumRevenuePerMonth(user, toYearMonth(boundary)));
+        return toChartData(values);
+    }
+
+    public static LocalDateTime getRangeStart(String range) {
+        return switch (range.toLowerCase()) {
+            case "last-3-months" -> LocalDateTime.now().minusMonths(3);
+            case "last-6-months" -> LocalDateTime.now().minusMonths(6);
+            case "one-year" -> LocalDateTime.now().minusYears(1);
+            case "ytd" -> LocalDateTime.now().withMonth(1).withDayOfMonth(1).withHour(0).withMinute(0).withSecond(0);
+            default -> LocalDateTime.now().minusMonths(1);
+        };
+    }
+
+    private static LocalDateTime getFirstWholeMonth(LocalDateTime start) {
+        return start.toLocalDate().withDayOfMonth(1).plusMonths(1).atStartOfDay();
+    }
+
+    private static int toYearMonth(LocalDateTime dateTime) {
+        return dateTime.getYear() * 100 + dateTime.getMonthValue();
+    }
+
+    private void merge(Map<String, Number> values, List<ReportRow> rows) {
+        for (ReportRow row : rows) {
+            values.merge(row.getLabel(), row.getValue(), ReportingService::add);
+        }
+    }
+
+    // Rows arrive ordered by month, so labels only need formatting (e.g. "Jan 2025")
+    private void mergeMonthly(Map<String, Number> values, List<MonthlyReportRow> rows) {
+        for (MonthlyReportRow row : rows) {
+            Month month = Month.of(row.getYearMonth() % 100);
+            String label = month.getDisplayName(TextStyle.SHORT, Locale.ENGLISH) + " " + row.getYearMonth() / 100;
+            values.merge(label, row.getValue(), ReportingService::add);
+        }
+    }
+
+    private static Number add(Number a, Number b) {
+        if (a instanceof Long && b instanceof Long) {
+            return a.longValue() + b.longValue();
+        }
+        return a.doubleValue() + b.doubleValue();
+    }
+
+    private ChartDataDto toChartData(Map<String, Number> values) {
+        ChartDataDto chartData = new ChartDataDto();
+        chartData.getLabels().addAll(values.keySet());
+        chartData.getValues().addAll(values.values());
+        return chartData;
+    }
+}
@@ -0,0 +1,59 @@
+package com.mrtasks.service;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.TaskRollup;
+import com.mrtasks.model.User;
+import com.mrtasks.repository.TaskRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Objects;
+
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class TaskRollupService {
+
+    private final TaskRollupRepository taskRollupRepository;
+
+    /**
+     * Moves a saved task's contribution from the rollup it was last counted in to the one it belongs to now.
+     */
+    @Transactional
+    public void recordSave(Task task) {
+        TaskRollup.Contribution previous = task.getPersistedContribution();
+        TaskRollup.Contribution current = TaskRollup.Contribution.of(task);
+        if (!Objects.equals(previous, current)) {
+            apply(task.getUser(), previous, -1);
+            apply(task.getUser(), current, 1);
+        }
+        task.setPersistedContribution(current);
+    }
+
+    @Transactional
+    public void recordDelete(Task task) {
+        apply(task.getUser(), task.getPersistedContribution(), -1);
+        task.setPersistedContribution(null);
+    }
+
+    @Transactional
+    public void rebuildAll() {
+        taskRollupRepository.deleteAllInBatch();
+        int rows = taskRollupRepository.insertFromTasks(Task.BillingType.FIXED);
+        log.info("Rebuilt {} task rollup rows", rows);
+    }
+
+    private void apply(User user, TaskRollup.Contribution contribution, int sign) {
+        if (contribution == null) {
+            return;
+        }
+        Long clientId = contribution.client() != null ? contribution.client().getId() : null;
+        taskRollupRepository.add(user.getId(), clientId, contribution.yearMonth(), contribution.billable(),
+                sign, sign * contribution.total(), sign * contribution.remainingDue());
+        if (sign < 0) {
+            taskRollupRepository.deleteIfEmpty(user.getId(), clientId, contribution.yearMonth(), contribution.billable());
+        }
+    }
+}
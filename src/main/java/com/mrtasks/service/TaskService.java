@@ -2,18 +2,131 @@ package com.mrtasks.service;
 
 import com.mrtasks.model.Task;
 import com.mrtasks.model.User;
+import com.mrtasks.model.enums.TaskSortField;
 import com.mrtasks.repository.TaskRepository;
+import com.mrtasks.repository.TaskSpecifications;
+import com.mrtasks.repository.projection.TaskSearchHit;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TaskService {
 
+    public static final int ORDER_GAP = 1024;
+
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final TaskRepository taskRepository;
+    private final TaskRollupService taskRollupService;
+
+    public record TaskFilter(String search, Long clientId, Task.TaskStatus status) {
+    }
+
+    public record TaskSort(TaskSortField field, boolean descending) {
+        public static final TaskSort DEFAULT = new TaskSort(TaskSortField.ORDER_INDEX, false);
+
+        Sort toSort() {
+            Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+            return Sort.by(direction, field.getAttribute()).and(Sort.by(direction, "id"));
+        }
+    }
+
+    /**
+     * One page of a task listing. {@code nextCursor} is null on the last page; {@code total} is null unless
+     * it was asked for.
+     */
+    public record TaskPage(List<Task> tasks, String nextCursor, Long total) {
+    }
+
+    /**
+     * Lists the user's tasks matching the filter, starting after {@code cursor} (a {@code nextCursor} from the
+     * previous page, or null for the first). Without a search term tasks come in {@code sort} order, ties broken
+     * by id; with one they are ranked by relevance. Either way pages are found by seeking past the last row of the previous page
+     * rather than by offset, so deep pages cost the same as the first, and the matching tasks are only counted
+     * when {@code includeTotal} is set.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public TaskPage findTasks(User user, TaskFilter filter, TaskSort sort, String cursor, int size, boolean includeTotal) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String[] position = null;
+        if (cursor != null && !cursor.isBlank()) {
+            // The value itself may contain '_' (IN_PROGRESS), the id never does
+            int separator = cursor.lastIndexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Malformed cursor: " + cursor);
+            }
+            position = new String[]{cursor.substring(0, separator), cursor.substring(separator + 1)};
+        }
+        if (filter.search() != null && !filter.search().isBlank()) {
+            return searchTasks(user, filter, position, pageSize, includeTotal);
+        }
+
+        Specification<Task> matching = TaskSpecifications.ownedBy(user);
+        if (filter.clientId() != null) {
+            matching = matching.and(TaskSpecifications.forClient(filter.clientId()));
+        }
+        if (filter.status() != null) {
+            matching = matching.and(TaskSpecifications.withStatus(filter.status()));
+        }
+
+        Specification<Task> page = matching.and(TaskSpecifications.fetchClient());
+        if (position != null) {
+            TaskSortField field = sort.field();
+            page = page.and(TaskSpecifications.after(field.getAttribute(), field.parse(position[0]),
+                    Long.parseLong(position[1]), sort.descending(), field.isNullable()));
+        }
+
+        // One extra row tells whether there is a next page
+        List<Task> tasks = taskRepository.findBy(page, query -> query.sortBy(sort.toSort()).limit(pageSize + 1).all());
+        String nextCursor = null;
+        if (tasks.size() > pageSize) {
+            tasks = tasks.subList(0, pageSize);
+            Task last = tasks.getLast();
+            nextCursor = sort.field().format(sort.field().valueOf(last)) + "_" + last.getId();
+        }
+        Long total = includeTotal ? taskRepository.count(matching) : null;
+        return new TaskPage(tasks, nextCursor, total);
+    }
+
+    // Ranked search; the cursor is the (rank, id) of the last hit on the previous page
+    private TaskPage searchTasks(User user, TaskFilter filter, String[] position, int pageSize, boolean includeTotal) {
+        String search = filter.search().trim();
+        TaskSearchHit after = position == null ? null
+                : new TaskSearchHit(Long.parseLong(position[1]), Double.parseDouble(position[0]));
+        List<TaskSearchHit> hits = taskRepository.searchTasks(
+                user, search, filter.clientId(), filter.status(), after, pageSize + 1);
+        String nextCursor = null;
+        if (hits.size() > pageSize) {
+            hits = hits.subList(0, pageSize);
+            TaskSearchHit last = hits.getLast();
+            nextCursor = last.rank() + "_" + last.id();
+        }
+
+        Map<Long, Task> tasksById = taskRepository.findAll(TaskSpecifications.ownedBy(user)
+                        .and(TaskSpecifications.idIn(hits.stream().map(TaskSearchHit::id).toList()))
+                        .and(TaskSpecifications.fetchClient())).stream()
+                .collect(Collectors.toMap(Task::getId, Function.identity()));
+        List<Task> tasks = hits.stream()
+                .map(hit -> tasksById.get(hit.id()))
+                .filter(Objects::nonNull)
+                .toList();
+        Long total = includeTotal
+                ? taskRepository.countSearchTasks(user, search, filter.clientId(), filter.status())
+                : null;
+        return new TaskPage(tasks, nextCursor, total);
+    }
 
     public List<Task> getTasksForUser(User user) {
         return taskRepository.findByUser(user).stream()
@@ -21,47 +134,91 @@ public class TaskService {
                 .toList();
     }
 
+    @Transactional
     public void saveTask(Task task) {
         taskRepository.save(task);
+        taskRollupService.recordSave(task);
     }
 
     public Task getTaskByIdAndUser(Long id, User user) {
         return taskRepository.findByIdAndUser(id, user);
     }
 
+    @Transactional
     public void updateTask(Task task) {
         taskRepository.save(task);
+        taskRollupService.recordSave(task);
     }
 
+    @Transactional
     public void deleteTask(Long id, User user) {
         Task task = getTaskByIdAndUser(id, user);
         if (task != null) {
             taskRepository.delete(task);
+            taskRollupService.recordDelete(task);
+        }
+    }
+
+    /**
+     * Key for a task appended to the bottom of a column. Keys are spaced ORDER_GAP apart so a later move
+     * can take the midpoint between its neighbours and only rewrite its own row. If the column has no room
+     * left at the bottom, it is respaced first.
+     */
+    @Transactional
+    public int getNextOrderIndex(User user, Task.TaskStatus status) {
+        Integer max = taskRepository.findMaxOrderIndex(user, status);
+        if (max == null) {
+            return 0;
+        }
+        if ((long) max + ORDER_GAP <= Integer.MAX_VALUE) {
+            return max + ORDER_GAP;
         }
+        List<Long> taskIds = taskRepository.findIdsInColumnOrder(user, status);
+        taskRepository.updateOrderIndexes(user, status, taskIds, ORDER_GAP);
+        return taskIds.size() * ORDER_GAP;
     }
 
-    public int getMaxOrderIndex(User user, Task.TaskStatus status) {
-        return taskRepository.findByUserAndStatus(user, status).stream()
-                .mapToInt(Task::getOrderIndex)
-                .max()
-                .orElse(-1); // Start at -1 so first task in column gets 0
+    /**
+     * Moves a task to another status column at the position it has in {@code taskIds}, the column's order as
+     * shown on the board. Only the moved task is written unless its neighbours leave no room between them,
+     * in which case the column is respaced in the same transaction.
+     */
+    @Transactional
+    public void moveTask(Task task, Task.TaskStatus status, List<Long> taskIds) {
+        User user = task.getUser();
+        task.setStatus(status);
+        int index = taskIds.indexOf(task.getId());
+        if (index < 0) {
+            task.setOrderIndex(getNextOrderIndex(user, status));
+        } else {
+            Integer previous = index > 0 ? taskRepository.findOrderIndex(taskIds.get(index - 1), user, status) : null;
+            Integer next = index < taskIds.size() - 1 ? taskRepository.findOrderIndex(taskIds.get(index + 1), user, status) : null;
+            Integer orderIndex = orderIndexBetween(previous, next);
+            if (orderIndex == null) {
+                taskRepository.updateOrderIndexes(user, status, taskIds, ORDER_GAP);
+                orderIndex = index * ORDER_GAP;
+            }
+            task.setOrderIndex(orderIndex);
+        }
+        updateTask(task);
     }
 
-    public void reorderTasks(List<Long> taskIds, User user) {
-        // Fetch all tasks for the user
-        List<Task> userTasks = taskRepository.findByUser(user);
-
-        // Update orderIndex for tasks in the provided list
-        for (int i = 0; i < taskIds.size(); i++) {
-            Long taskId = taskIds.get(i);
-            int finalI = i;
-            userTasks.stream()
-                    .filter(task -> task.getId().equals(taskId))
-                    .findFirst()
-                    .ifPresent(task -> {
-                        task.setOrderIndex(finalI);
-                        taskRepository.save(task);
-                    });
+    private Integer orderIndexBetween(Integer previous, Integer next) {
+        long orderIndex;
+        if (previous == null && next == null) {
+            orderIndex = 0;
+        } else if (previous == null) {
+            orderIndex = (long) next - ORDER_GAP;
+        } else if (next == null) {
+            orderIndex = (long) previous + ORDER_GAP;
+        } else if ((long) next - previous >= 2) {
+            orderIndex = previous + ((long) next - previous) / 2;
+        } else {
+            return null; // No free key between the neighbours
+        }
+        if (orderIndex > Integer.MAX_VALUE || orderIndex < Integer.MIN_VALUE) {
+            return null;
         }
+        return (int) orderIndex;
     }
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.mrtasks.service.auth;
+
+import com.mrtasks.model.User;
+import com.mrtasks.model.UserProfile;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The signed-in user with their profile, resolved once and injected into controller
+ * methods that declare a parameter of this type. The entities are detached; save them through their repository.
+ */
+@Getter
+@RequiredArgsConstructor
+public class CurrentUser {
+    private final User user;
+    private final UserProfile profile;
+}
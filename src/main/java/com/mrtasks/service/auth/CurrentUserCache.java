@@ -0,0 +1,45 @@
+package com.mrtasks.service.auth;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class CurrentUserCache {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    private record Entry(CurrentUser currentUser, long expiresAt) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public CurrentUser get(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(username, entry);
+            return null;
+        }
+        return entry.currentUser();
+    }
+
+    public void put(String username, CurrentUser currentUser) {
+        entries.put(username, new Entry(currentUser, System.currentTimeMillis() + TTL.toMillis()));
+    }
+
+    public void evict(String username) {
+        entries.remove(username);
+    }
+
+    @Scheduled(fixedRate = 10 * 60 * 1000) // Every 10 minutes
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() < now);
+    }
+}
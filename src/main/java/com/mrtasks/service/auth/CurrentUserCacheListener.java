@@ -0,0 +1,47 @@
+package com.mrtasks.service.auth;
+
+import com.mrtasks.model.User;
+import com.mrtasks.model.UserProfile;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Evicts a user's cached {@link CurrentUser} whenever their user or profile row is written,
+ * whichever controller or service does it. Instantiated by Hibernate through Spring, so it can be injected.
+ * <p>
+ * The entry is evicted at flush and, inside a transaction, again after commit: a request that reloaded the user
+ * in between read the rows as they were before the commit and would otherwise keep them cached.
+ */
+@RequiredArgsConstructor
+public class CurrentUserCacheListener {
+
+    private final CurrentUserCache currentUserCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void evict(Object entity) {
+        User user = switch (entity) {
+            case User u -> u;
+            case UserProfile profile -> profile.getUser();
+            default -> null;
+        };
+        if (user == null || user.getUsername() == null) {
+            return;
+        }
+        String username = user.getUsername();
+        currentUserCache.evict(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    currentUserCache.evict(username);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.mrtasks.service.auth;
+
+import com.mrtasks.model.User;
+import com.mrtasks.model.UserProfile;
+import com.mrtasks.repository.UserProfileRepository;
+import com.mrtasks.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class CurrentUserService {
+
+    private final UserRepository userRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final CurrentUserCache currentUserCache;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CurrentUser getCurrentUser(String username) {
+        CurrentUser currentUser = currentUserCache.get(username);
+        if (currentUser == null) {
+            currentUser = load(username);
+            currentUserCache.put(username, currentUser);
+        }
+        return currentUser;
+    }
+
+    private CurrentUser load(String username) {
+        User user = userRepository.findByUsername(username).orElseThrow();
+        UserProfile profile = userProfileRepository.findByUser(user)
+                .orElseGet(() -> {
+                    UserProfile newProfile = new UserProfile();
+                    newProfile.setUser(user);
+                    newProfile.setLanguage("en");
+                    return userProfileRepository.save(newProfile);
+                });
+
+        // Cached instances are shared between requests, so they must not stay attached to this one
+        entityManager.detach(profile);
+        entityManager.detach(user);
+        return new CurrentUser(user, profile);
+    }
+}
@@ -0,0 +1,226 @@
+package com.mrtasks.service.cache;
+
+import com.mrtasks.model.Client;
+import com.mrtasks.model.User;
+import com.mrtasks.repository.ClientRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * In-process index of each user's client names, for typeahead suggestions that never touch the database once a
+ * user's index is loaded.
+ * <p>
+ * A user's index is built on first use from their clients, kept current by {@link ClientNameIndexListener} as
+ * clients are created, renamed or deleted on this instance, and dropped after {@link #IDLE_TIMEOUT} without
+ * lookups. The listener sees nothing written by other instances, so an index is also rebuilt once it is
+ * {@link #MAX_AGE} old; suggestions may lag other instances by that much, which is why pages that need the
+ * exact client list read it from the database instead.
+ * <p>
+ * Names are normalized (accents and punctuation stripped, lowercased), and every word start is a key, so "acme"
+ * suggests both "ACME Ltd" and "The Acme Company".
+ */
+@Component
+public class ClientNameIndex {
+
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(30);
+    private static final Duration MAX_AGE = Duration.ofMinutes(5);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    public record Suggestion(Long id, String name) {
+    }
+
+    private record Change(long stamp, long at) {
+    }
+
+    private final ClientRepository clientRepository;
+    private final Map<Long, UserIndex> indexes = new ConcurrentHashMap<>();
+    // Each user's latest change, so a load that raced with one is used once but not kept. Stamps are never
+    // reused, and a change is forgotten only once any load it raced with would be expired anyway
+    private final Map<Long, Change> lastChanges = new ConcurrentHashMap<>();
+    private final AtomicLong changeStamps = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public ClientNameIndex(ClientRepository clientRepository, MeterRegistry meterRegistry) {
+        this.clientRepository = clientRepository;
+        this.hits = Counter.builder("mrtasks.client.index")
+                .tag("result", "hit")
+                .description("Client name lookups served from a loaded index")
+                .register(meterRegistry);
+        this.misses = Counter.builder("mrtasks.client.index")
+                .tag("result", "miss")
+                .description("Client name lookups that loaded the user's clients from the database")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("mrtasks.client.index.users", List.of(), indexes);
+    }
+
+    /**
+     * Up to {@code limit} of the user's clients with a word starting with {@code prefix}, those whose name
+     * starts with it first, then by name. A blank prefix returns the first clients by name.
+     */
+    public List<Suggestion> suggest(User user, String prefix, int limit) {
+        return indexFor(user).suggest(normalize(prefix == null ? "" : prefix), limit);
+    }
+
+    void saved(Long userId, Suggestion client) {
+        changed(userId);
+        indexes.computeIfPresent(userId, (id, index) -> index.without(client.id()).with(client));
+    }
+
+    void removed(Long userId, Long clientId) {
+        changed(userId);
+        indexes.computeIfPresent(userId, (id, index) -> index.without(clientId));
+    }
+
+    @Scheduled(fixedRate = 5 * 60 * 1000) // Every 5 minutes
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        indexes.values().removeIf(index -> index.lastAccess < now - IDLE_TIMEOUT.toMillis() || index.isExpired(now));
+        lastChanges.values().removeIf(change -> change.at() < now - MAX_AGE.toMillis());
+    }
+
+    private void changed(Long userId) {
+        lastChanges.put(userId, new Change(changeStamps.incrementAndGet(), System.currentTimeMillis()));
+    }
+
+    private UserIndex indexFor(User user) {
+        long now = System.currentTimeMillis();
+        UserIndex index = indexes.get(user.getId());
+        if (index != null && !index.isExpired(now)) {
+            hits.increment();
+        } else {
+            misses.increment();
+            UserIndex expired = index;
+            Change changeBefore = lastChanges.get(user.getId());
+            index = UserIndex.of(clientRepository.findByUser(user).stream()
+                    .map(client -> new Suggestion(client.getId(), client.getName()))
+                    .toList(), now);
+            UserIndex fresh = index;
+            // Checked under the entry's lock, which saved and removed also take. Keeps an index another thread
+            // loaded meanwhile; replaces only a missing or expired one
+            UserIndex kept = indexes.compute(user.getId(), (id, current) -> {
+                if (current != null && current != expired && !current.isExpired(now)) {
+                    return current;
+                }
+                return Objects.equals(lastChanges.get(id), changeBefore) ? fresh : current;
+            });
+            if (kept != null && !kept.isExpired(now)) {
+                index = kept;
+            }
+        }
+        index.lastAccess = now;
+        return index;
+    }
+
+    static Suggestion suggestionOf(Client client) {
+        return new Suggestion(client.getId(), client.getName());
+    }
+
+    static String normalize(String text) {
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // Immutable apart from lastAccess; changes build a new one
+    private static final class UserIndex {
+        private static final Comparator<Suggestion> BY_NAME =
+                Comparator.comparing((Suggestion client) -> normalize(client.name())).thenComparing(Suggestion::id);
+
+        private final List<Suggestion> clients;
+        // Normalized name from each word start onwards, sorted, and the client each one belongs to
+        private final String[] keys;
+        private final Suggestion[] owners;
+        private final boolean[] wholeName;
+        // When the clients were read from the database; changes applied since keep it
+        private final long loadedAt;
+        private volatile long lastAccess;
+
+        private UserIndex(List<Suggestion> clients, String[] keys, Suggestion[] owners, boolean[] wholeName, long loadedAt) {
+            this.clients = clients;
+            this.keys = keys;
+            this.owners = owners;
+            this.wholeName = wholeName;
+            this.loadedAt = loadedAt;
+            this.lastAccess = loadedAt;
+        }
+
+        static UserIndex of(List<Suggestion> clients, long loadedAt) {
+            List<Suggestion> sorted = clients.stream().sorted(BY_NAME).toList();
+            record Key(String key, Suggestion owner, boolean wholeName) {
+            }
+            List<Key> entries = new ArrayList<>();
+            for (Suggestion client : sorted) {
+                String name = normalize(client.name());
+                entries.add(new Key(name, client, true));
+                for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+                    entries.add(new Key(name.substring(i + 1), client, false));
+                }
+            }
+            entries.sort(Comparator.comparing(Key::key));
+
+            String[] keys = new String[entries.size()];
+            Suggestion[] owners = new Suggestion[entries.size()];
+            boolean[] wholeName = new boolean[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                keys[i] = entries.get(i).key();
+                owners[i] = entries.get(i).owner();
+                wholeName[i] = entries.get(i).wholeName();
+            }
+            return new UserIndex(sorted, keys, owners, wholeName, loadedAt);
+        }
+
+        UserIndex with(Suggestion client) {
+            List<Suggestion> updated = new ArrayList<>(clients);
+            updated.add(client);
+            return changed(of(updated, loadedAt));
+        }
+
+        UserIndex without(Long clientId) {
+            return changed(of(clients.stream().filter(client -> !client.id().equals(clientId)).toList(), loadedAt));
+        }
+
+        boolean isExpired(long now) {
+            return now - loadedAt > MAX_AGE.toMillis();
+        }
+
+        private UserIndex changed(UserIndex updated) {
+            updated.lastAccess = lastAccess;
+            return updated;
+        }
+
+        List<Suggestion> suggest(String prefix, int limit) {
+            if (prefix.isEmpty()) {
+                return clients.subList(0, Math.min(limit, clients.size()));
+            }
+            Set<Suggestion> nameMatches = new LinkedHashSet<>();
+            Set<Suggestion> wordMatches = new LinkedHashSet<>();
+            int from = Arrays.binarySearch(keys, prefix);
+            for (int i = from < 0 ? -from - 1 : from; i < keys.length && keys[i].startsWith(prefix); i++) {
+                (wholeName[i] ? nameMatches : wordMatches).add(owners[i]);
+            }
+            wordMatches.removeAll(nameMatches);
+            List<Suggestion> matches = new ArrayList<>(nameMatches.size() + wordMatches.size());
+            nameMatches.stream().sorted(BY_NAME).forEach(matches::add);
+            wordMatches.stream().sorted(BY_NAME).forEach(matches::add);
+            return matches.subList(0, Math.min(limit, matches.size()));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mrtasks.service.cache;
+
+import com.mrtasks.model.Client;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Applies client writes to the {@link ClientNameIndex}, whichever controller or service makes them. Inside a
+ * transaction the change is applied after commit, so a rolled back write never shows up in suggestions.
+ */
+@RequiredArgsConstructor
+public class ClientNameIndexListener {
+
+    // Resolved on first event: the index needs the client repository, which needs the entity manager factory
+    // that is still being built when Hibernate creates this listener
+    private final ObjectProvider<ClientNameIndex> clientNameIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Client client) {
+        Long userId = client.getUser().getId();
+        ClientNameIndex.Suggestion suggestion = ClientNameIndex.suggestionOf(client);
+        afterCommit(() -> clientNameIndex.getObject().saved(userId, suggestion));
+    }
+
+    @PostRemove
+    public void removed(Client client) {
+        Long userId = client.getUser().getId();
+        Long clientId = client.getId();
+        afterCommit(() -> clientNameIndex.getObject().removed(userId, clientId));
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
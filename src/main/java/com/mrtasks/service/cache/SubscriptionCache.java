@@ -0,0 +1,98 @@
+package com.mrtasks.service.cache;
+
+import com.mrtasks.model.UserSubscription;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of user subscriptions keyed by user id. Entries live for at most
+ * {@link #MAX_AGE} and never past the subscription's own expiry, so a lapsed premium
+ * subscription is always re-read from the database.
+ */
+@Component
+public class SubscriptionCache {
+
+    private static final Duration MAX_AGE = Duration.ofMinutes(10);
+
+    private record Entry(UserSubscription subscription, long expiresAt) {
+    }
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    // Bumped on every eviction, so a load that raced with one is used once but not kept
+    private final AtomicLong evictions = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+
+    public SubscriptionCache(MeterRegistry meterRegistry) {
+        this.hits = Counter.builder("mrtasks.subscription.cache")
+                .tag("result", "hit")
+                .description("Subscription lookups served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("mrtasks.subscription.cache")
+                .tag("result", "miss")
+                .description("Subscription lookups that went to the database")
+                .register(meterRegistry);
+        meterRegistry.gaugeMapSize("mrtasks.subscription.cache.size", List.of(), entries);
+    }
+
+    public Optional<UserSubscription> get(Long userId, Supplier<Optional<UserSubscription>> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.expiresAt() > now) {
+            hits.increment();
+            return Optional.ofNullable(entry.subscription());
+        }
+
+        misses.increment();
+        long evictionsBefore = evictions.get();
+        UserSubscription snapshot = loader.get().map(SubscriptionCache::copyOf).orElse(null);
+        // Checked under the entry's lock, which evict's remove also takes
+        entries.compute(userId, (id, current) -> evictions.get() == evictionsBefore
+                ? new Entry(snapshot, expiryFor(snapshot, now))
+                : current);
+        return Optional.ofNullable(snapshot);
+    }
+
+    public void evict(Long userId) {
+        evictions.incrementAndGet();
+        entries.remove(userId);
+    }
+
+    @Scheduled(fixedRate = 10 * 60 * 1000) // Every 10 minutes
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+    }
+
+    private static long expiryFor(UserSubscription subscription, long now) {
+        long expiresAt = now + MAX_AGE.toMillis();
+        if (subscription != null && subscription.isPremium() && subscription.getExpiresAt() != null) {
+            long subscriptionEnd = subscription.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (subscriptionEnd > now) {
+                expiresAt = Math.min(expiresAt, subscriptionEnd);
+            }
+        }
+        return expiresAt;
+    }
+
+    // Cached copies are detached from the persistence context and shared between threads
+    private static UserSubscription copyOf(UserSubscription subscription) {
+        UserSubscription copy = new UserSubscription();
+        copy.setId(subscription.getId());
+        copy.setPremium(subscription.isPremium());
+        copy.setExpiresAt(subscription.getExpiresAt());
+        copy.setLastUpdated(subscription.getLastUpdated());
+        return copy;
+    }
+}
@@ -0,0 +1,134 @@
+package com.mrtasks.service.invoice;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content-addressed store for issued invoice PDFs on the local filesystem. A PDF lives at
+ * {@code <root>/<ab>/<cd>/<sha256>.pdf}, so identical documents are stored once and a stored file never
+ * changes. PDFs are kept as rendered: their content streams are already deflated, and plain files can be
+ * sent with sendfile and served in byte ranges.
+ * <p>
+ * Issued invoices must outlive deploys, so production requires an absolute directory outside the application
+ * ({@code mrtasks.invoice.archive.require-absolute}).
+ */
+@Component
+@Log4j2
+public class InvoiceArchiveStore {
+
+    public record StoredPdf(String contentHash, long size) {
+    }
+
+    private final Path root;
+    private final Path incoming;
+
+    public InvoiceArchiveStore(@Value("${mrtasks.invoice.archive.dir}") String dir,
+                               @Value("${mrtasks.invoice.archive.require-absolute:false}") boolean requireAbsolute) throws IOException {
+        if (requireAbsolute && !Path.of(dir).isAbsolute()) {
+            throw new IllegalStateException("mrtasks.invoice.archive.dir must be an absolute path, got: " + dir);
+        }
+        this.root = Path.of(dir).toAbsolutePath();
+        // Partial files are written next to the store, so moving them in is an atomic rename
+        this.incoming = root.resolve("incoming");
+        Files.createDirectories(incoming);
+    }
+
+    public Path pathFor(String contentHash) {
+        return root.resolve(contentHash.substring(0, 2))
+                .resolve(contentHash.substring(2, 4))
+                .resolve(contentHash + ".pdf");
+    }
+
+    /**
+     * Wraps {@code target} so that everything written through it is also written to a new file in the store.
+     * Call {@link ArchivingOutputStream#commit()} once the PDF is complete, and {@link ArchivingOutputStream#discard()}
+     * in a finally block to clean up if it never was.
+     */
+    public ArchivingOutputStream archive(OutputStream target) throws IOException {
+        return new ArchivingOutputStream(target, Files.createTempFile(incoming, "invoice-", ".part"));
+    }
+
+    public class ArchivingOutputStream extends FilterOutputStream {
+
+        private final Path partFile;
+        private final OutputStream file;
+        private final MessageDigest digest;
+        private long size;
+        private boolean committed;
+
+        private ArchivingOutputStream(OutputStream target, Path partFile) throws IOException {
+            super(target);
+            this.partFile = partFile;
+            this.file = new BufferedOutputStream(Files.newOutputStream(partFile));
+            try {
+                this.digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            file.write(b);
+            digest.update((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            file.write(b, off, len);
+            digest.update(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                file.close();
+            }
+        }
+
+        public StoredPdf commit() throws IOException {
+            file.close();
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            Path stored = pathFor(contentHash);
+            if (Files.exists(stored)) {
+                Files.delete(partFile);
+            } else {
+                Files.createDirectories(stored.getParent());
+                // Same content under the same name, so losing a race to another writer is harmless
+                Files.move(partFile, stored, StandardCopyOption.ATOMIC_MOVE);
+            }
+            committed = true;
+            return new StoredPdf(contentHash, size);
+        }
+
+        public void discard() {
+            if (committed) {
+                return;
+            }
+            try {
+                file.close();
+                Files.deleteIfExists(partFile);
+            } catch (IOException e) {
+                log.warn("Failed to remove partial invoice {}: {}", partFile, e.getMessage());
+            }
+        }
+    }
+}
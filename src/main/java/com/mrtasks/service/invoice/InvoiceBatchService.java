@@ -0,0 +1,134 @@
+package com.mrtasks.service.invoice;
+
+import com.mrtasks.model.Client;
+import com.mrtasks.model.Task;
+import com.mrtasks.model.User;
+import com.mrtasks.model.UserProfile;
+import com.mrtasks.repository.TaskRepository;
+import com.mrtasks.repository.UserProfileRepository;
+import com.mrtasks.service.EmailService;
+import com.mrtasks.service.InvoiceService;
+import com.mrtasks.service.InvoiceService.PreparedInvoice;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Month-end billing in one go: one invoice per client over the user's billable tasks not yet on an issued invoice, rendered in
+ * parallel on the {@link InvoiceRenderBulkhead} and written as a ZIP archive, optionally also queued for email to each client.
+ */
+@Service
+@RequiredArgsConstructor
+public class InvoiceBatchService {
+
+    // Renders queued or held in memory ahead of the archive writer
+    private static final int MAX_IN_FLIGHT = 4;
+
+    public record ClientInvoice(Client client, PreparedInvoice invoice) {
+    }
+
+    private final TaskRepository taskRepository;
+    private final UserProfileRepository userProfileRepository;
+    private final InvoiceService invoiceService;
+    private final EmailService emailService;
+    private final InvoiceRenderBulkhead renderBulkhead;
+
+    /**
+     * Groups the user's billable, visible tasks that still have an amount due and are not on any issued invoice by
+     * client, ordered by client name.
+     */
+    public List<ClientInvoice> prepareBatch(User user) {
+        UserProfile profile = userProfileRepository.findByUser(user).orElse(new UserProfile());
+        Map<Long, List<Task>> tasksByClient = new LinkedHashMap<>();
+        taskRepository.findUninvoiced(user).stream()
+                .filter(task -> task.getRemainingDue() > 0)
+                .sorted(Comparator.comparing((Task task) -> task.getClient().getName(), String.CASE_INSENSITIVE_ORDER)
+                        .thenComparing(task -> task.getClient().getId())
+                        .thenComparing(Task::getId))
+                .forEach(task -> tasksByClient.computeIfAbsent(task.getClient().getId(), id -> new ArrayList<>()).add(task));
+        return tasksByClient.values().stream()
+                .map(tasks -> new ClientInvoice(tasks.getFirst().getClient(), invoiceService.prepareInvoice(tasks, profile)))
+                .toList();
+    }
+
+    /**
+     * Renders the invoices on the rendering bulkhead and writes them to {@code out} as a ZIP, in order, while
+     * later ones are still rendering. If {@code email} is set, each invoice is also queued for the client's
+     * address; clients without one only get the archive entry.
+     */
+    public void writeArchive(List<ClientInvoice> invoices, boolean email, OutputStream out) throws IOException {
+        Deque<Future<byte[]>> rendering = new ArrayDeque<>();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            int next = 0;
+            for (ClientInvoice invoice : invoices) {
+                while (rendering.size() < MAX_IN_FLIGHT && next < invoices.size()) {
+                    ClientInvoice toRender = invoices.get(next++);
+                    rendering.add(renderBulkhead.submit(() -> render(toRender, email)));
+                }
+                writeEntry(zip, entryName(invoice.client()), await(rendering.removeFirst()));
+            }
+        } finally {
+            rendering.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private byte[] render(ClientInvoice clientInvoice, boolean email) throws Exception {
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        invoiceService.writeInvoice(clientInvoice.invoice(), pdf);
+        byte[] bytes = pdf.toByteArray();
+
+        Client client = clientInvoice.client();
+        UserProfile profile = clientInvoice.invoice().profile();
+        if (email && StringUtils.hasText(client.getEmail())) {
+            List<Long> taskIds = clientInvoice.invoice().tasks().stream().map(Task::getId).toList();
+            emailService.sendInvoiceEmail(client.getEmail(), bytes, profile.getCompanyName(), profile.getLanguage(), profile.getEmail(), taskIds);
+        }
+        return bytes;
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering invoices", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to render invoice", e.getCause());
+        }
+    }
+
+    // PDFs are already compressed, so entries are stored rather than deflated again
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] pdf) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(pdf);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(pdf.length);
+        entry.setCompressedSize(pdf.length);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(pdf);
+        zip.closeEntry();
+    }
+
+    private static String entryName(Client client) {
+        String name = client.getName() != null ? client.getName().replaceAll("[^\\p{L}\\p{N}._-]+", "_") : "";
+        return "invoice_" + name + "_" + client.getId() + ".pdf";
+    }
+}
@@ -0,0 +1,141 @@
+package com.mrtasks.service.invoice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Rendered invoice PDFs keyed by the fingerprint of everything they show (see
+ * {@code InvoiceService.prepareInvoice}). Bounded by total size, least recently used first out. Entries
+ * expire after {@link #MAX_AGE} so a re-download on another day gets a fresh invoice date.
+ */
+@Component
+public class InvoiceCache {
+
+    private static final Duration MAX_AGE = Duration.ofHours(12);
+
+    private record Entry(byte[] pdf, long expiresAt) {
+    }
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private final Counter hits;
+    private final Counter misses;
+
+    public InvoiceCache(@Value("${mrtasks.invoice.cache.max-bytes:67108864}") long maxBytes, MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        // A handful of huge invoices should not flush everything else
+        this.maxEntryBytes = maxBytes / 16;
+        this.hits = Counter.builder("mrtasks.invoice.cache")
+                .tag("result", "hit")
+                .description("Invoice downloads served from the cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("mrtasks.invoice.cache")
+                .tag("result", "miss")
+                .description("Invoice downloads that were rendered")
+                .register(meterRegistry);
+        Gauge.builder("mrtasks.invoice.cache.bytes", this, InvoiceCache::totalBytes)
+                .description("Bytes of cached invoice PDFs")
+                .register(meterRegistry);
+    }
+
+    public synchronized Optional<byte[]> get(String fingerprint) {
+        Entry entry = entries.get(fingerprint);
+        if (entry == null || entry.expiresAt() <= System.currentTimeMillis()) {
+            if (entry != null) {
+                remove(fingerprint);
+            }
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.pdf());
+    }
+
+    /**
+     * Wraps {@code target} so that everything written through it is also kept, up to the per-entry limit.
+     * Call {@link CapturingOutputStream#store()} once the invoice is complete to add it to the cache.
+     */
+    public CapturingOutputStream capture(String fingerprint, OutputStream target) {
+        return new CapturingOutputStream(fingerprint, target);
+    }
+
+    public class CapturingOutputStream extends FilterOutputStream {
+
+        private final String fingerprint;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private CapturingOutputStream(String fingerprint, OutputStream target) {
+            super(target);
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                copy.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        public void store() {
+            if (copy != null) {
+                put(fingerprint, copy.toByteArray());
+                copy = null;
+            }
+        }
+
+        private void checkSize() {
+            if (copy.size() > maxEntryBytes) {
+                copy = null;
+            }
+        }
+    }
+
+    private synchronized void put(String fingerprint, byte[] pdf) {
+        remove(fingerprint);
+        entries.put(fingerprint, new Entry(pdf, System.currentTimeMillis() + MAX_AGE.toMillis()));
+        totalBytes += pdf.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            totalBytes -= eldest.next().pdf().length;
+            eldest.remove();
+        }
+    }
+
+    private void remove(String fingerprint) {
+        Entry removed = entries.remove(fingerprint);
+        if (removed != null) {
+            totalBytes -= removed.pdf().length;
+        }
+    }
+
+    private synchronized long totalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,166 @@
+package com.mrtasks.service.invoice;
+
+import com.mrtasks.exception.RenderingOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps PDF rendering off request threads and away from most of the CPU. Renders run on a fixed pool of half
+ * the cores; a request must first be admitted, and once the pool and {@code queue-depth} waiting renders are
+ * taken, further requests are turned away at once with a {@link RenderingOverloadedException} (503 with
+ * Retry-After) instead of piling up.
+ */
+@Component
+public class InvoiceRenderBulkhead {
+
+    private final int threads = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private final long retryAfterSeconds;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore admissions;
+    private final Timer queueWait;
+    private final Timer renderTime;
+    private final Counter rejected;
+
+    public InvoiceRenderBulkhead(@Value("${mrtasks.invoice.render.queue-depth:16}") int queueDepth,
+                                 @Value("${mrtasks.invoice.render.retry-after:5s}") Duration retryAfter,
+                                 MeterRegistry meterRegistry) {
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+        // The queue itself is unbounded; admissions keep it at most queueDepth deep for single invoices
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name("invoice-render-", 0).daemon(true).factory());
+        this.admissions = new Semaphore(threads + queueDepth);
+
+        this.queueWait = Timer.builder("mrtasks.invoice.render.queue.wait")
+                .description("Time a render waited for a rendering thread")
+                .register(meterRegistry);
+        this.renderTime = Timer.builder("mrtasks.invoice.render.duration")
+                .description("Time spent rendering an invoice")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("mrtasks.invoice.render.rejected")
+                .description("Invoice requests turned away because rendering was saturated")
+                .register(meterRegistry);
+        Gauge.builder("mrtasks.invoice.render.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Renders in progress")
+                .register(meterRegistry);
+        Gauge.builder("mrtasks.invoice.render.queued", executor, e -> e.getQueue().size())
+                .description("Renders waiting for a rendering thread")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves a place for one render, or throws if there is none. Call this before anything is written to
+     * the response, so that a rejection can still become a 503.
+     */
+    public Admission admit() {
+        if (!admissions.tryAcquire()) {
+            rejected.increment();
+            throw new RenderingOverloadedException("error.invoice.busy", retryAfterSeconds);
+        }
+        return new Admission();
+    }
+
+    /**
+     * Queues a render without admission, for work that was admitted as a whole (a batch). Callers must
+     * bound how many they have outstanding.
+     */
+    public <T> Future<T> submit(Callable<T> render) {
+        long queuedAt = System.nanoTime();
+        return executor.submit(() -> {
+            queueWait.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+            return renderTime.recordCallable(render);
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public final class Admission {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+        // Set by whichever comes first: the render starting on the pool, or cancel() turning it away
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private volatile Future<?> rendering;
+
+        private Admission() {
+        }
+
+        /**
+         * Runs the render on the rendering pool and waits for it. The admission is given back when the render
+         * stops running on the pool, not when this returns, so an abandoned render is still counted.
+         */
+        public <T> T render(Callable<T> render) throws IOException {
+            Future<T> future;
+            try {
+                future = submit(() -> {
+                    if (!claimed.compareAndSet(false, true)) {
+                        throw new CancellationException("Render cancelled before it started");
+                    }
+                    try {
+                        return render.call();
+                    } finally {
+                        release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+            rendering = future;
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while rendering invoice", e);
+            } catch (CancellationException e) {
+                throw new IOException("Invoice render was cancelled", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException io) {
+                    throw io;
+                }
+                throw new IOException("Failed to render invoice", e.getCause());
+            }
+        }
+
+        /**
+         * Abandons the admission, e.g. when the request timed out or the client went away. A render that has
+         * not started yet never will and the admission is given back now; one that is running is interrupted
+         * and gives it back when it stops.
+         */
+        public void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                release();
+                return;
+            }
+            Future<?> future = rendering;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                admissions.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.mrtasks.service.invoice;
+
+import com.lowagie.text.Font;
+import com.lowagie.text.pdf.BaseFont;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Everything an invoice needs that does not depend on the invoice itself: the parsed DejaVu fonts,
+ * the {@link Font} styles built on them, and per-language message bundles and date formats.
+ * Loaded once at startup and shared read-only by all renders.
+ */
+@Component
+@Getter
+public class InvoiceRenderingContext {
+
+    public static final String INVOICE_NUMBER_FORMAT = "%05d";
+    private static final String[] SUPPORTED_LANGUAGES = {"en", "de", "el", "es", "fr", "it"};
+
+    public record LocaleResources(ResourceBundle messages, DateTimeFormatter dateFormat) {
+    }
+
+    private final Font normalFont;
+    private final Font boldFont;
+    private final Font footerFont;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, LocaleResources> localeResources = new ConcurrentHashMap<>();
+
+    public InvoiceRenderingContext() throws IOException {
+        BaseFont baseFont = loadFont("DejaVuSans.ttf");
+        BaseFont boldBaseFont = loadFont("DejaVuSans-Bold.ttf");
+
+        this.normalFont = new Font(baseFont, 10, Font.NORMAL, Color.BLACK);
+        this.boldFont = new Font(boldBaseFont, 10, Font.BOLD, Color.BLACK);
+        this.footerFont = new Font(baseFont, 9, Font.ITALIC, Color.GRAY);
+
+        for (String language : SUPPORTED_LANGUAGES) {
+            forLanguage(language);
+        }
+    }
+
+    public LocaleResources forLanguage(String language) {
+        return localeResources.computeIfAbsent(language != null ? language : "en", lang -> {
+            Locale locale = Locale.forLanguageTag(lang);
+            return new LocaleResources(
+                    ResourceBundle.getBundle("messages", locale),
+                    DateTimeFormatter.ofPattern("dd MMMM yyyy", locale));
+        });
+    }
+
+    private static BaseFont loadFont(String name) throws IOException {
+        try (InputStream fontStream = new ClassPathResource("fonts/" + name).getInputStream()) {
+            byte[] fontBytes = fontStream.readAllBytes();
+            return BaseFont.createFont(name, BaseFont.IDENTITY_H, BaseFont.EMBEDDED, true, fontBytes, null);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.mrtasks.service.invoice;
+
+import com.lowagie.text.Image;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fetches invoice logos once and keeps them scaled down to the invoice's logo box, so rendering an invoice
+ * never waits on the logo host. Entries are keyed by URL and point at the scaled image by content hash, so
+ * the same picture behind several URLs is stored once. Failed fetches are remembered briefly as well.
+ */
+@Log4j2
+@Component
+public class LogoCache {
+
+    /** The logo box on the invoice, in PDF points. */
+    public static final float LOGO_BOX = 100;
+    // Scale to twice the box so logos stay sharp when printed
+    private static final int SCALED_PIXELS = (int) LOGO_BOX * 2;
+
+    private static final int MAX_BYTES = 2 * 1024 * 1024;
+    private static final int MAX_ENTRIES = 1000;
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration TTL = Duration.ofHours(24);
+    private static final Duration FAILURE_TTL = Duration.ofMinutes(10);
+
+    private record Entry(String contentHash, long expiresAt) {
+    }
+
+    private final HttpClient httpClient;
+    private final Duration fetchTimeout;
+    // Written only under the cache's lock, so an entry and its image are published and dropped together
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> imagesByHash = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LogoCache() {
+        this(HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(3))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build(), FETCH_TIMEOUT);
+    }
+
+    LogoCache(HttpClient httpClient, Duration fetchTimeout) {
+        this.httpClient = httpClient;
+        this.fetchTimeout = fetchTimeout;
+    }
+
+    /**
+     * Returns the logo for {@code logoUrl}, scaled to fit the logo box, or empty if it cannot be loaded.
+     */
+    public Optional<Image> getLogo(String logoUrl) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(logoUrl);
+        if (entry == null || entry.expiresAt() < now) {
+            entry = load(logoUrl, now);
+        }
+        byte[] scaled = entry.contentHash() != null ? imagesByHash.get(entry.contentHash()) : null;
+        if (scaled == null) {
+            return Optional.empty();
+        }
+        try {
+            // A fresh instance per document; Image carries layout state
+            Image image = Image.getInstance(scaled);
+            image.scaleToFit(LOGO_BOX, LOGO_BOX);
+            return Optional.of(image);
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    public synchronized void evict(String logoUrl) {
+        if (logoUrl != null && entries.remove(logoUrl) != null) {
+            dropUnreferencedImages();
+        }
+    }
+
+    private Entry load(String logoUrl, long now) {
+        // Fetched and scaled outside the lock; only publishing takes it
+        try {
+            byte[] scaled = scale(fetch(logoUrl));
+            return publish(logoUrl, new Entry(sha256(scaled), now + TTL.toMillis()), scaled);
+        } catch (Exception e) {
+            log.warn("Failed to load logo {}: {}", logoUrl, e.getMessage());
+            return publish(logoUrl, new Entry(null, now + FAILURE_TTL.toMillis()), null);
+        }
+    }
+
+    private synchronized Entry publish(String logoUrl, Entry entry, byte[] scaled) {
+        if (entries.size() >= MAX_ENTRIES) {
+            trim();
+        }
+        if (scaled != null) {
+            imagesByHash.putIfAbsent(entry.contentHash(), scaled);
+        }
+        entries.put(logoUrl, entry);
+        return entry;
+    }
+
+    private byte[] fetch(String logoUrl) throws IOException, InterruptedException {
+        URI uri = URI.create(logoUrl.matches("(?i)^https?://.*") ? logoUrl : "https://" + logoUrl);
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(fetchTimeout)
+                .GET()
+                .build();
+        // The request timeout only covers the headers; the deadline below covers the body as well
+        CompletableFuture<HttpResponse<byte[]>> pending = httpClient.sendAsync(request,
+                info -> info.statusCode() == 200 ? new LimitedBody() : HttpResponse.BodySubscribers.replacing(null));
+        HttpResponse<byte[]> response;
+        try {
+            response = pending.copy().orTimeout(fetchTimeout.toMillis(), TimeUnit.MILLISECONDS).get();
+        } catch (ExecutionException e) {
+            pending.cancel(true);
+            if (e.getCause() instanceof TimeoutException) {
+                throw new IOException("No complete response within " + fetchTimeout);
+            }
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            pending.cancel(true);
+            throw e;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    /** Collects the body, giving up as soon as it grows past {@link #MAX_BYTES}. */
+    private static final class LimitedBody implements HttpResponse.BodySubscriber<byte[]> {
+
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private Flow.Subscription subscription;
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer buffer : buffers) {
+                byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                bytes.write(chunk, 0, chunk.length);
+            }
+            if (bytes.size() > MAX_BYTES) {
+                subscription.cancel();
+                body.completeExceptionally(new IOException("Logo larger than " + MAX_BYTES + " bytes"));
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(bytes.toByteArray());
+        }
+    }
+
+    private static byte[] scale(byte[] original) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+        if (source == null) {
+            throw new IOException("Unsupported image format");
+        }
+        double ratio = Math.min(1.0, Math.min((double) SCALED_PIXELS / source.getWidth(), (double) SCALED_PIXELS / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(target, "png", out);
+        return out.toByteArray();
+    }
+
+    private void trim() {
+        entries.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                .limit(MAX_ENTRIES / 10)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(entries::remove);
+        dropUnreferencedImages();
+    }
+
+    // Callers hold the lock
+    private void dropUnreferencedImages() {
+        imagesByHash.keySet().retainAll(entries.values().stream().map(Entry::contentHash).toList());
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
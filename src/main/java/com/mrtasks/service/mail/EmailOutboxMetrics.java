@@ -0,0 +1,65 @@
+package com.mrtasks.service.mail;
+
+import com.mrtasks.model.EmailOutbox;
+import com.mrtasks.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class EmailOutboxMetrics {
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter deduplicated;
+    private final Timer deliveryTime;
+    private final AtomicLong pending = new AtomicLong();
+    private final EmailOutboxRepository emailOutboxRepository;
+
+    public EmailOutboxMetrics(MeterRegistry meterRegistry, EmailOutboxRepository emailOutboxRepository) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.sent = outcome(meterRegistry, "sent");
+        this.retried = outcome(meterRegistry, "retried");
+        this.failed = outcome(meterRegistry, "failed");
+        this.deduplicated = outcome(meterRegistry, "deduplicated");
+        this.deliveryTime = Timer.builder("mrtasks.email.outbox.delivery")
+                .description("Time spent handing a message to the SMTP server")
+                .register(meterRegistry);
+        Gauge.builder("mrtasks.email.outbox.pending", pending, AtomicLong::get)
+                .description("Messages waiting for delivery, as of the last poll")
+                .register(meterRegistry);
+    }
+
+    public void recordSent(long nanos) {
+        sent.increment();
+        deliveryTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRetried() {
+        retried.increment();
+    }
+
+    public void recordFailed() {
+        failed.increment();
+    }
+
+    public void recordDeduplicated() {
+        deduplicated.increment();
+    }
+
+    public void refreshPending() {
+        pending.set(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING));
+    }
+
+    private static Counter outcome(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("mrtasks.email.outbox")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
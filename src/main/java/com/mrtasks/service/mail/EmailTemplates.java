@@ -0,0 +1,158 @@
+package com.mrtasks.service.mail;
+
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HTML bodies for account emails, compiled once per language at startup. The localized texts are looked up and
+ * escaped ahead of time, so rendering only escapes and splices in the per-email values.
+ */
+@Component
+public class EmailTemplates {
+
+    private static final String[] SUPPORTED_LANGUAGES = {"en", "el", "es", "fr", "de", "it"};
+    private static final String DEFAULT_LANGUAGE = "en";
+
+    // {subject}, {body} and {footer} are filled from the message bundle at startup; {link} on every render
+    private static final String LINK_EMAIL_LAYOUT =
+            "<h3>{subject}</h3><p>{body}</p><p><a href=\"{link}\">{link}</a></p><p>{footer}</p>";
+
+    public enum Template {
+        VERIFICATION("email.verification"),
+        PASSWORD_RESET("email.reset");
+
+        private final String messagePrefix;
+
+        Template(String messagePrefix) {
+            this.messagePrefix = messagePrefix;
+        }
+    }
+
+    public record RenderedEmail(String subject, String html) {
+    }
+
+    private record CompiledTemplate(String subject, String[] literals, String[] variables, int literalLength) {
+
+        RenderedEmail render(Map<String, String> values) {
+            Map<String, String> escapedValues = new HashMap<>(values.size() * 2);
+            String[] escaped = new String[variables.length];
+            int length = literalLength;
+            for (int i = 0; i < variables.length; i++) {
+                String value = values.get(variables[i]);
+                if (value == null) {
+                    throw new IllegalArgumentException("No value for template variable " + variables[i]);
+                }
+                escaped[i] = escapedValues.computeIfAbsent(variables[i], name -> escape(value));
+                length += escaped[i].length();
+            }
+            StringBuilder html = new StringBuilder(length);
+            for (int i = 0; i < variables.length; i++) {
+                html.append(literals[i]).append(escaped[i]);
+            }
+            html.append(literals[variables.length]);
+            return new RenderedEmail(subject, html.toString());
+        }
+    }
+
+    private final Map<String, Map<Template, CompiledTemplate>> templates = new HashMap<>();
+
+    public EmailTemplates(MessageSource messageSource) {
+        for (String language : SUPPORTED_LANGUAGES) {
+            Locale locale = Locale.forLanguageTag(language);
+            Map<Template, CompiledTemplate> compiled = new EnumMap<>(Template.class);
+            for (Template template : Template.values()) {
+                String subject = messageSource.getMessage(template.messagePrefix + ".subject", null, locale);
+                Map<String, String> texts = Map.of(
+                        "subject", escape(subject),
+                        "body", escape(messageSource.getMessage(template.messagePrefix + ".body", null, locale)),
+                        "footer", escape(messageSource.getMessage(template.messagePrefix + ".footer", null, locale)));
+                compiled.put(template, compile(LINK_EMAIL_LAYOUT, texts, subject));
+            }
+            templates.put(language, compiled);
+        }
+    }
+
+    /**
+     * Renders the template in the given language, falling back to English for unsupported ones.
+     * Values are HTML-escaped.
+     */
+    public RenderedEmail render(Template template, String language, Map<String, String> values) {
+        Map<Template, CompiledTemplate> compiled = templates.get(language);
+        if (compiled == null) {
+            compiled = templates.get(DEFAULT_LANGUAGE);
+        }
+        return compiled.get(template).render(values);
+    }
+
+    // Splits the layout into literal text around the placeholders left for render time
+    private static CompiledTemplate compile(String layout, Map<String, String> texts, String subject) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+        int pos = 0;
+        while (pos < layout.length()) {
+            int open = layout.indexOf('{', pos);
+            if (open < 0) {
+                literal.append(layout, pos, layout.length());
+                break;
+            }
+            int close = layout.indexOf('}', open);
+            literal.append(layout, pos, open);
+            String name = layout.substring(open + 1, close);
+            String text = texts.get(name);
+            if (text != null) {
+                literal.append(text);
+            } else {
+                literals.add(literal.toString());
+                literalLength += literal.length();
+                literal.setLength(0);
+                variables.add(name);
+            }
+            pos = close + 1;
+        }
+        literals.add(literal.toString());
+        literalLength += literal.length();
+        return new CompiledTemplate(subject, literals.toArray(String[]::new), variables.toArray(String[]::new), literalLength);
+    }
+
+    // The emails are sent as UTF-8, so only markup characters need escaping; accented and Greek text stays as is
+    private static String escape(String value) {
+        int i = 0;
+        while (i < value.length() && replacement(value.charAt(i)) == null) {
+            i++;
+        }
+        if (i == value.length()) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = replacement(c);
+            if (replacement != null) {
+                escaped.append(replacement);
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String replacement(char c) {
+        return switch (c) {
+            case '&' -> "&amp;";
+            case '<' -> "&lt;";
+            case '>' -> "&gt;";
+            case '"' -> "&quot;";
+            case '\'' -> "&#39;";
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,164 @@
+package com.mrtasks.service.mail;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps authenticated SMTP connections open between sends instead of connecting (and negotiating STARTTLS)
+ * for every message. A connection is checked with {@link Transport#isConnected()}, which issues a NOOP, before
+ * it is reused, and idle connections are closed before the server would drop them.
+ */
+@Component
+public class SmtpTransportPool {
+
+    private static final int MAX_CONNECTIONS = 8;
+    private static final Duration MAX_IDLE = Duration.ofSeconds(30);
+    // Reconnect now and then; some servers cap the number of messages per session
+    private static final int MAX_MESSAGES_PER_CONNECTION = 100;
+
+    private static final class PooledTransport {
+        private final Transport transport;
+        private long lastUsed = System.currentTimeMillis();
+        private int messagesSent;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+
+    private final JavaMailSenderImpl mailSender;
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits = new Semaphore(MAX_CONNECTIONS);
+    private final AtomicInteger open = new AtomicInteger();
+    private final Counter connectionsOpened;
+    private final Counter connectionsReused;
+    private final Counter connectionsDiscarded;
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender, MeterRegistry meterRegistry) {
+        this.mailSender = mailSender;
+        this.connectionsOpened = connectionCounter(meterRegistry, "opened");
+        this.connectionsReused = connectionCounter(meterRegistry, "reused");
+        this.connectionsDiscarded = connectionCounter(meterRegistry, "discarded");
+        Gauge.builder("mrtasks.smtp.pool.open", open, AtomicInteger::get)
+                .description("Open SMTP connections")
+                .register(meterRegistry);
+        Gauge.builder("mrtasks.smtp.pool.idle", idle, BlockingDeque::size)
+                .description("Open SMTP connections waiting to be reused")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends the messages over one pooled connection. Returns one entry per message, in order: {@code null} if it
+     * was sent, otherwise the failure. A broken connection is replaced and the remaining messages go on.
+     */
+    public List<MessagingException> sendAll(List<MimeMessage> messages) {
+        List<MessagingException> results = new ArrayList<>(messages.size());
+        permits.acquireUninterruptibly();
+        PooledTransport pooled = null;
+        try {
+            for (MimeMessage message : messages) {
+                try {
+                    if (pooled == null) {
+                        pooled = borrow();
+                    }
+                    message.saveChanges();
+                    pooled.transport.sendMessage(message, message.getAllRecipients());
+                    pooled.messagesSent++;
+                    results.add(null);
+                } catch (MessagingException e) {
+                    results.add(e);
+                    if (pooled != null && !pooled.transport.isConnected()) {
+                        discard(pooled);
+                        pooled = null;
+                    }
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                release(pooled);
+            }
+            permits.release();
+        }
+        return results;
+    }
+
+    @Scheduled(fixedRate = 15000) // Every 15 seconds
+    public void closeIdleConnections() {
+        long idleBefore = System.currentTimeMillis() - MAX_IDLE.toMillis();
+        Iterator<PooledTransport> it = idle.iterator();
+        while (it.hasNext()) {
+            PooledTransport pooled = it.next();
+            if (pooled.lastUsed < idleBefore && idle.removeFirstOccurrence(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport pooled;
+        // Most recently used first; it is the one most likely still alive
+        while ((pooled = idle.pollFirst()) != null) {
+            if (pooled.transport.isConnected()) {
+                connectionsReused.increment();
+                return pooled;
+            }
+            discard(pooled);
+        }
+
+        Transport transport = mailSender.getSession().getTransport(mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        open.incrementAndGet();
+        connectionsOpened.increment();
+        return new PooledTransport(transport);
+    }
+
+    private void release(PooledTransport pooled) {
+        if (pooled.messagesSent >= MAX_MESSAGES_PER_CONNECTION) {
+            discard(pooled);
+            return;
+        }
+        pooled.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(pooled);
+    }
+
+    private void discard(PooledTransport pooled) {
+        open.decrementAndGet();
+        connectionsDiscarded.increment();
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            // The connection is being thrown away either way
+        }
+    }
+
+    private static Counter connectionCounter(MeterRegistry meterRegistry, String event) {
+        return Counter.builder("mrtasks.smtp.pool.connections")
+                .tag("event", event)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,124 @@
+package com.mrtasks.service.scheduler;
+
+import com.mrtasks.model.EmailOutbox;
+import com.mrtasks.repository.EmailOutboxRepository;
+import com.mrtasks.service.EmailService;
+import com.mrtasks.service.mail.EmailOutboxMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers queued emails. Each poll leases a batch of due messages and hands them to virtual threads in groups of
+ * up to {@link #EMAILS_PER_CONNECTION}, each group sent over one pooled SMTP connection, with at most
+ * {@link #MAX_CONCURRENT_SENDS} groups in flight. Failed attempts are retried with exponential backoff until
+ * {@link #MAX_ATTEMPTS} is reached.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class EmailOutboxScheduler {
+
+    private static final int MAX_CONCURRENT_SENDS = 8;
+    private static final int EMAILS_PER_CONNECTION = 4;
+    private static final int BATCH_SIZE = 32;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final Duration LEASE = Duration.ofMinutes(5);
+    private static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(2);
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailService emailService;
+    private final EmailOutboxMetrics metrics;
+
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore sendPermits = new Semaphore(MAX_CONCURRENT_SENDS);
+
+    @Scheduled(fixedDelay = 2000) // Every 2 seconds after the previous poll
+    public void deliverDueEmails() {
+        metrics.refreshPending();
+        // Only claim what can start right away; the rest stays available to other instances
+        int capacity = Math.min(BATCH_SIZE, sendPermits.availablePermits() * EMAILS_PER_CONNECTION);
+        if (capacity == 0) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> claimed = emailOutboxRepository.claimDue(now, now.plus(LEASE), capacity);
+        List<EmailOutbox> emails = emailOutboxRepository.findAllById(claimed);
+        for (int from = 0; from < emails.size(); from += EMAILS_PER_CONNECTION) {
+            List<EmailOutbox> group = emails.subList(from, Math.min(from + EMAILS_PER_CONNECTION, emails.size()));
+            sendPermits.acquireUninterruptibly();
+            senders.execute(() -> {
+                try {
+                    deliver(group);
+                } finally {
+                    sendPermits.release();
+                }
+            });
+        }
+    }
+
+    @Scheduled(cron = "0 15 4 * * ?") // Every day at 4:15 AM
+    public void purgeSentEmails() {
+        emailOutboxRepository.deleteSentBefore(LocalDateTime.now().minusDays(7));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        senders.shutdown();
+        senders.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    private void deliver(List<EmailOutbox> group) {
+        long start = System.nanoTime();
+        List<Exception> results;
+        try {
+            results = emailService.deliverAll(group);
+        } catch (Exception e) {
+            results = Collections.nCopies(group.size(), e);
+        }
+        long perEmailNanos = (System.nanoTime() - start) / group.size();
+        for (int i = 0; i < group.size(); i++) {
+            EmailOutbox email = group.get(i);
+            Exception failure = results.get(i);
+            if (failure == null) {
+                emailOutboxRepository.markSent(email.getId(), LocalDateTime.now());
+                metrics.recordSent(perEmailNanos);
+            } else {
+                recordFailure(email, failure);
+            }
+        }
+    }
+
+    private void recordFailure(EmailOutbox email, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+        if (error.length() > 1000) {
+            error = error.substring(0, 1000);
+        }
+        if (email.getAttempts() >= MAX_ATTEMPTS) {
+            emailOutboxRepository.markFailedAttempt(email.getId(), EmailOutbox.Status.FAILED, LocalDateTime.now(), error);
+            metrics.recordFailed();
+            log.warn("Giving up on email {} to {}: {}", email.getId(), email.getRecipient(), error);
+        } else {
+            emailOutboxRepository.markFailedAttempt(email.getId(), EmailOutbox.Status.PENDING,
+                    LocalDateTime.now().plus(retryDelay(email.getAttempts())), error);
+            metrics.recordRetried();
+        }
+    }
+
+    private static Duration retryDelay(int attempts) {
+        Duration delay = FIRST_RETRY_DELAY.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+}
@@ -1,8 +1,10 @@
 package com.mrtasks.service.scheduler;
 
 import com.mrtasks.config.RateLimitConfig;
+import com.mrtasks.model.RateLimitViolation;
 import com.mrtasks.service.EmailService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
@@ -11,6 +13,7 @@ import java.util.List;
 
 @Component
 @RequiredArgsConstructor
+@Log4j2
 public class LogScheduler {
 
     private final RateLimitConfig rateLimitConfig;
@@ -18,17 +21,17 @@ public class LogScheduler {
 
     @Scheduled(cron = "0 0 * * * ?") // Every hour
     public void sendRateLimitLogs() {
-        List<String> logs;
-        synchronized (rateLimitConfig.getLimitHitLogs()) {
-            logs = rateLimitConfig.getLimitHitLogs();
-            if (logs.isEmpty()) {
-                return; // No logs to send
-            }
+        List<RateLimitViolation> logs = rateLimitConfig.drainLimitHitLogs();
+        if (logs.isEmpty()) {
+            return; // No logs to send
         }
 
         String date = LocalDateTime.now().toString();
-        emailService.sendLogEmail(logs, date);
-
-        rateLimitConfig.clearLimitHitLogs();
+        try {
+            emailService.sendLogEmail(logs, date);
+        } catch (RuntimeException e) {
+            log.error("Failed to send {} rate limit violations, keeping them for the next run", logs.size(), e);
+            rateLimitConfig.restoreLimitHitLogs(logs);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.mrtasks.service.scheduler;
+
+import com.mrtasks.repository.TaskRepository;
+import com.mrtasks.repository.TaskRollupRepository;
+import com.mrtasks.service.TaskRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class RollupScheduler {
+
+    private final TaskRollupService taskRollupService;
+    private final TaskRollupRepository taskRollupRepository;
+    private final TaskRepository taskRepository;
+
+    // Backfill on first start with the rollup table in place
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillRollups() {
+        if (taskRollupRepository.count() == 0 && taskRepository.count() > 0) {
+            taskRollupService.rebuildAll();
+        }
+    }
+
+    @Scheduled(cron = "0 30 3 * * ?") // Every night, repairs any drift (e.g. from task writes made outside TaskService)
+    public void rebuildRollups() {
+        taskRollupService.rebuildAll();
+    }
+}
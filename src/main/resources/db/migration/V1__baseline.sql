@@ -0,0 +1,72 @@
+-- Schema as Hibernate's ddl-auto=update left it before versioned migrations. Existing databases are baselined
+-- at this version (spring.flyway.baseline-on-migrate), so this only runs on an empty database; anything added
+-- since belongs in a later migration.
+
+create table users (
+    id bigserial primary key,
+    username varchar(255) not null unique,
+    password varchar(255) not null,
+    role varchar(255) not null,
+    provider varchar(255),
+    status varchar(15) not null default 'ACTIVE' check (status in ('ACTIVE', 'BLOCKED')),
+    last_login timestamp(6),
+    created_at timestamp not null default current_timestamp,
+    updated_at timestamp default current_timestamp
+);
+
+create table user_profile (
+    id bigserial primary key,
+    user_id bigint not null unique references users,
+    company_name varchar(255),
+    logo_url varchar(255),
+    email varchar(255),
+    phone varchar(255),
+    email_verified boolean default false,
+    email_verification_token varchar(255),
+    reset_password_token varchar(255),
+    language varchar(5) not null default 'en',
+    currency varchar(3) not null default 'USD',
+    update_history text
+);
+
+create table user_subscription (
+    id bigserial primary key,
+    user_id bigint not null unique references users,
+    is_premium boolean not null,
+    expires_at timestamp(6),
+    last_updated timestamp(6)
+);
+
+create table clients (
+    id bigserial primary key,
+    user_id bigint not null references users,
+    name varchar(255) not null,
+    email varchar(255),
+    phone varchar(255),
+    address varchar(255),
+    tax_id varchar(255),
+    created_at timestamp not null default current_timestamp,
+    updated_at timestamp default current_timestamp
+);
+
+create table tasks (
+    id bigserial primary key,
+    user_id bigint not null references users,
+    client_id bigint references clients,
+    title varchar(255),
+    description text,
+    deadline timestamp(6),
+    billable boolean not null,
+    hours_worked float(53) not null,
+    hourly_rate float(53) not null,
+    client_name varchar(255),
+    advance_payment float(53) not null,
+    color varchar(255),
+    order_index integer not null,
+    hidden boolean not null,
+    fixed_amount float default 0,
+    billing_type varchar(10) default 'HOURLY' check (billing_type in ('HOURLY', 'FIXED')),
+    status varchar(255) check (status in ('TODO', 'IN_PROGRESS', 'COMPLETED')),
+    created_at timestamp not null default current_timestamp,
+    updated_at timestamp default current_timestamp
+);
@@ -0,0 +1,12 @@
+-- Monthly per-client task aggregates for reporting
+create table if not exists task_rollups (
+    id bigserial primary key,
+    user_id bigint not null references users,
+    client_id bigint references clients,
+    year_month integer not null,
+    billable boolean not null,
+    task_count bigint not null,
+    total_amount float(53) not null,
+    remaining_due float(53) not null,
+    unique (user_id, client_id, year_month, billable)
+);
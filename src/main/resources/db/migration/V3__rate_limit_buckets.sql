@@ -0,0 +1,6 @@
+-- Shared token buckets for mrtasks.rate-limit.backend=postgres (Bucket4j)
+create table if not exists rate_limit_buckets (
+    id varchar(160) primary key,
+    state bytea,
+    expires_at bigint
+);
@@ -0,0 +1,23 @@
+-- Outgoing mail, queued in the sender's transaction and delivered by EmailOutboxScheduler
+create table if not exists email_outbox (
+    id bigserial primary key,
+    sender varchar(255) not null,
+    recipient varchar(255) not null,
+    reply_to varchar(255),
+    subject varchar(255) not null,
+    body text not null,
+    html boolean not null,
+    attachment bytea,
+    attachment_name varchar(255),
+    attachment_type varchar(255),
+    dedupe_key varchar(64) not null,
+    status varchar(16) not null check (status in ('PENDING', 'SENDING', 'SENT', 'FAILED')),
+    attempts integer not null,
+    next_attempt_at timestamp(6) not null,
+    last_error varchar(1000),
+    created_at timestamp(6) not null,
+    sent_at timestamp(6)
+);
+
+create index if not exists idx_email_outbox_due on email_outbox (status, next_attempt_at);
+create index if not exists idx_email_outbox_dedupe on email_outbox (dedupe_key, created_at);
@@ -0,0 +1,23 @@
+-- Per-user invoice numbers and the record of every issued invoice
+create table if not exists invoice_sequences (
+    user_id bigint primary key,
+    next_value bigint not null
+);
+
+create table if not exists issued_invoices (
+    id bigserial primary key,
+    user_id bigint not null references users,
+    number bigint not null,
+    task_ids bigint[] not null,
+    fingerprint varchar(64),
+    issued_at timestamp(6) not null,
+    client_id bigint,
+    client_name varchar(255),
+    total float default 0,
+    advance_paid float default 0,
+    amount_due float default 0,
+    currency varchar(3),
+    content_hash varchar(64),
+    size_bytes bigint,
+    constraint uk_issued_invoices_user_number unique (user_id, number)
+);
@@ -0,0 +1,25 @@
+-- Task search: prefix full-text matches over title and description, substring and fuzzy matches on title.
+-- Idempotent, because databases that predate migrations already ran this as schema.sql on startup.
+create extension if not exists pg_trgm;
+
+alter table tasks add column if not exists search_vector tsvector generated always as (
+    setweight(to_tsvector('simple', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('simple', coalesce(description, '')), 'B')
+) stored;
+
+create index if not exists idx_tasks_search_vector on tasks using gin (search_vector);
+create index if not exists idx_tasks_title_trgm on tasks using gin (title gin_trgm_ops);
+
+-- Task listing sorts: each is served by a (user_id, key, id) index, read backwards when descending.
+-- total_amount mirrors Task.getTotal().
+alter table tasks add column if not exists total_amount double precision generated always as (
+    case when billable then
+        case when billing_type = 'FIXED' then fixed_amount else hours_worked * hourly_rate end
+    else 0 end
+) stored;
+
+create index if not exists idx_tasks_user_order_index on tasks (user_id, order_index, id);
+create index if not exists idx_tasks_user_deadline on tasks (user_id, deadline, id);
+create index if not exists idx_tasks_user_created_at on tasks (user_id, created_at, id);
+create index if not exists idx_tasks_user_total_amount on tasks (user_id, total_amount, id);
+create index if not exists idx_tasks_user_status on tasks (user_id, status, id);
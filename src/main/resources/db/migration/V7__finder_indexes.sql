@@ -0,0 +1,45 @@
+-- Indexes for the repository finders. Per-user lookups lead with user_id so each one reads only that user's rows.
+
+-- Board columns: TaskRepository.findByUserAndStatus, findMaxOrderIndex and the respacing window function
+create index if not exists idx_tasks_user_status_order on tasks (user_id, status, order_index, id);
+
+-- Batch invoicing (findByUserAndBillableTrueAndHiddenFalseAndClientIsNotNull), only the rows it can return
+create index if not exists idx_tasks_user_open_billable on tasks (user_id, client_id)
+    where billable and not hidden and client_id is not null;
+
+-- existsByClient, and the foreign key check when a client is deleted
+create index if not exists idx_tasks_client on tasks (client_id) where client_id is not null;
+
+-- findByUserAndDeadlineAfter and the reporting ranges use idx_tasks_user_deadline (user_id, deadline, id) from V6
+
+-- ClientRepository.findByUser, paged and whole, in name order
+create index if not exists idx_clients_user_name on clients (user_id, name);
+
+-- Reporting reads rollups by user from a starting month
+create index if not exists idx_task_rollups_user_month on task_rollups (user_id, year_month);
+create index if not exists idx_task_rollups_client on task_rollups (client_id) where client_id is not null;
+
+-- Token links from emails; most profiles have no outstanding token
+create index if not exists idx_user_profile_verification_token on user_profile (email_verification_token)
+    where email_verification_token is not null;
+create index if not exists idx_user_profile_reset_token on user_profile (reset_password_token)
+    where reset_password_token is not null;
+
+-- Admin statistics
+create index if not exists idx_users_last_login on users (last_login);
+create index if not exists idx_user_subscription_premium_expiry on user_subscription (expires_at) where is_premium;
+
+-- findByUser and findByUserIdIn on profiles and subscriptions. V1 declares user_id unique, but schemas created
+-- by Hibernate before the one-to-one mapping was unique may have no index on it at all
+do $$
+declare
+    table_name text;
+begin
+    foreach table_name in array array['user_profile', 'user_subscription'] loop
+        if not exists (select 1 from pg_index i
+                       join pg_attribute a on a.attrelid = i.indrelid and a.attnum = i.indkey[0]
+                       where i.indrelid = table_name::regclass and a.attname = 'user_id') then
+            execute format('create index idx_%s_user on %I (user_id)', table_name, table_name);
+        end if;
+    end loop;
+end $$;
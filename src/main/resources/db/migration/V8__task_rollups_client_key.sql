@@ -0,0 +1,30 @@
+-- TaskRollupRepository.add upserts rollups by (user, client, month, billable). The unique constraint from V2
+-- treats every null client_id as distinct, so it let through duplicate rows for tasks without a client and
+-- can't serve as the upsert's conflict target for them; key on coalesce(client_id, 0) instead.
+
+-- Merge the duplicates into the oldest row of each key
+update task_rollups r
+set task_count = d.task_count, total_amount = d.total_amount, remaining_due = d.remaining_due
+from (select min(id) as id, sum(task_count) as task_count, sum(total_amount) as total_amount,
+             sum(remaining_due) as remaining_due
+      from task_rollups where client_id is null
+      group by user_id, year_month, billable having count(*) > 1) d
+where r.id = d.id;
+
+delete from task_rollups r
+where r.client_id is null and exists (
+    select 1 from task_rollups o
+    where o.client_id is null and o.user_id = r.user_id and o.year_month = r.year_month
+      and o.billable = r.billable and o.id < r.id);
+
+-- The constraint is named by Postgres or, on tables Hibernate created before Flyway, by Hibernate
+do $$
+declare
+    name text;
+begin
+    for name in select conname from pg_constraint where conrelid = 'task_rollups'::regclass and contype = 'u' loop
+        execute format('alter table task_rollups drop constraint %I', name);
+    end loop;
+end $$;
+
+create unique index if not exists uk_task_rollups_key on task_rollups (user_id, coalesce(client_id, 0), year_month, billable);
@@ -0,0 +1,3 @@
+-- Bucket ids are "<action label>:<username>", and usernames may be up to 255 characters, so 160 was too short
+-- for long usernames. Leaves room for the longest label and some to spare.
+alter table rate_limit_buckets alter column id type varchar(300);
@@ -60,6 +60,21 @@ function initializeClients() {
         $('#searchButton').click(function() {
             searchClients(0);
         });
+        // Typeahead suggestions while typing; served from memory, so they do not count against the search limit.
+        // Past their own limit the request fails and the list simply stays as it is
+        let suggestTimer = null;
+        $('#searchInput').on('input', function() {
+            clearTimeout(suggestTimer);
+            const prefix = $(this).val();
+            suggestTimer = setTimeout(function() {
+                $.getJSON('/clients/suggest', { q: prefix }, function(suggestions) {
+                    const $list = $('#clientSuggestions').empty();
+                    suggestions.forEach(function(client) {
+                        $list.append($('<option>').attr('value', client.name));
+                    });
+                });
+            }, 150);
+        });
         // Pagination handlers
         $('.pagination').on('click', '.page-link', function(e) {
             e.preventDefault();
@@ -554,6 +554,8 @@ function initializeDashboard(translatedStatus, currencySymbol, sendingText, sent
                     let errorMessage = failedError;
                     if (xhr.status === 429) {
                         errorMessage = /*[[#{limit.error.rate.invoice}]]*/ 'Report generation limit exceeded. Please try again later.';
+                    } else if (xhr.status === 503) {
+                        errorMessage = /*[[#{error.invoice.busy}]]*/ 'Invoices are being generated for many users right now. Please try again in a few seconds.';
                     }
                     $('#ajax-error').text(errorMessage).show().delay(5000).fadeOut();
                 }
@@ -627,6 +629,8 @@ function initializeDashboard(translatedStatus, currencySymbol, sendingText, sent
                     let errorMessage;
                     if (xhr.status === 429) {
                         errorMessage = rateLimitError;
+                    } else if (xhr.status === 409) {
+                        errorMessage = /*[[#{error.invoice.already.sent}]]*/ 'This invoice was already sent to the client a few minutes ago.';
                     } else if (xhr.status === 400) {
                         errorMessage = invalidError;
                     } else {
@@ -655,6 +659,8 @@ function initializeDashboard(translatedStatus, currencySymbol, sendingText, sent
                     let errorMessage;
                     if (xhr.status === 429) {
                         errorMessage = rateLimitError;
+                    } else if (xhr.status === 409) {
+                        errorMessage = /*[[#{error.invoice.already.sent}]]*/ 'This invoice was already sent to the client a few minutes ago.';
                     } else if (xhr.status === 400) {
                         errorMessage = invalidError;
                     } else {
@@ -1,4 +1,4 @@
-function initializeTasks(statusMessages, hiddenStatusMessages, translations, currentPage, currentPageSize) {$(document).ready(function() {
+function initializeTasks(statusMessages, hiddenStatusMessages, translations, nextCursor, totalPages, currentPageSize) {$(document).ready(function() {
     const csrfToken = $('meta[name="_csrf"]').attr('content');
     const csrfHeader = $('meta[name="_csrf_header"]').attr('content');
     $.ajaxSetup({
@@ -13,21 +13,33 @@ function initializeTasks(statusMessages, hiddenStatusMessages, translations, cur
     $('#tasksTable').on('click', '.collapsible', function() {
         $(this).closest('tr').toggleClass('expanded');
     });
+    // Keyset pagination: cursors of the pages visited so far, the first page has none
+    let cursors = [null];
+    let pageIndex = 0;
     // Search button handler
     $('#searchButton').click(function() {
-        searchTasks(0);
+        searchTasks(true);
     });
     // Pagination handlers
     $('.pagination').on('click', '.page-link', function(e) {
         e.preventDefault();
-        const page = $(this).data('page');
-        if (page !== undefined && !$(this).parent().hasClass('disabled')) {
-            searchTasks(page);
+        const nav = $(this).data('nav');
+        if (!nav || $(this).parent().hasClass('disabled')) {
+            return;
+        }
+        if (nav === 'next' && nextCursor) {
+            cursors.push(nextCursor);
+            pageIndex++;
+            searchTasks(false);
+        } else if (nav === 'prev' && pageIndex > 0) {
+            cursors.pop();
+            pageIndex--;
+            searchTasks(false);
         }
     });
-    // Page size change handler
-    $('#pageSizeSelect').change(function() {
-        searchTasks(0);
+    // Page size and sort change handlers
+    $('#pageSizeSelect, #sortField, #sortDirection').change(function() {
+        searchTasks(true);
     });
     // Initial task listeners
     $('#tasksTable tbody tr').each(function() {
@@ -67,18 +79,35 @@ function initializeTasks(statusMessages, hiddenStatusMessages, translations, cur
         });
     });
     // Search tasks function
-    function searchTasks(page) {
+    function searchTasks(reset) {
+        if (reset) {
+            cursors = [null];
+            pageIndex = 0;
+        }
         const search = $('#searchInput').val();
         const clientId = $('#clientFilter').val();
         const status = $('#statusFilter').val();
         const size = $('#pageSizeSelect').val();
-        $.getJSON('/tasks/search', {
-            page: page,
+        const params = {
             size: size,
             search: search,
             clientId: clientId,
-            status: status
-        }, function(data) {
+            status: status,
+            sort: $('#sortField').val(),
+            direction: $('#sortDirection').val()
+        };
+        if (cursors[pageIndex]) {
+            params.cursor = cursors[pageIndex];
+        }
+        // Counting is only needed when the filters change
+        if (reset) {
+            params.count = true;
+        }
+        $.getJSON('/tasks/search', params, function(data) {
+            nextCursor = data.nextCursor;
+            if (data.totalPages != null) {
+                totalPages = data.totalPages;
+            }
             updateTaskTable(data);
             $('#ajax-error').hide();
         }).fail(function(xhr) {
@@ -141,25 +170,23 @@ function initializeTasks(statusMessages, hiddenStatusMessages, translations, cur
         // Update pagination
         const $pagination = $('.pagination');
         $pagination.empty();
-        if (data.totalPages > 0) {
-            $pagination.append(`
-                  <li class="page-item ${data.pageNumber === 0 ? 'disabled' : ''}">
-                      <a class="page-link" href="#" data-page="${data.pageNumber - 1}">Previous</a>
-                  </li>
-              `);
-            for (let i = 0; i < data.totalPages; i++) {
-                $pagination.append(`
-                      <li class="page-item ${i === data.pageNumber ? 'active' : ''}">
-                          <a class="page-link" href="#" data-page="${i}">${i + 1}</a>
-                      </li>
-                  `);
-            }
+        $pagination.append(`
+              <li class="page-item ${pageIndex === 0 ? 'disabled' : ''}">
+                  <a class="page-link" href="#" data-nav="prev">Previous</a>
+              </li>
+          `);
+        if (totalPages > 0) {
             $pagination.append(`
-                  <li class="page-item ${data.pageNumber >= data.totalPages - 1 ? 'disabled' : ''}">
-                      <a class="page-link" href="#" data-page="${data.pageNumber + 1}">Next</a>
+                  <li class="page-item active">
+                      <span class="page-link">${pageIndex + 1} / ${totalPages}</span>
                   </li>
               `);
         }
+        $pagination.append(`
+              <li class="page-item ${data.nextCursor ? '' : 'disabled'}">
+                  <a class="page-link" href="#" data-nav="next">Next</a>
+              </li>
+          `);
     }
     // Update single task row
     function updateTaskRow(task) {
@@ -0,0 +1,97 @@
+package com.mrtasks.service;
+
+import com.mrtasks.model.Task;
+import com.mrtasks.model.UserProfile;
+import com.mrtasks.service.invoice.InvoiceRenderingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-invoice rendering time and allocation, with the shared {@link InvoiceRenderingContext} and with one built
+ * per invoice (fonts and bundles loaded for every render, as before the context existed). Not run by the build;
+ * run {@link #main} with the test classpath, e.g. from the IDE.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoiceRenderingBenchmark {
+
+    private static final int TASKS = 10;
+
+    private InvoiceService sharedContextService;
+    private InvoiceService.PreparedInvoice invoice;
+    private LocalDateTime issuedAt;
+
+    @Setup
+    public void setUp() throws IOException {
+        sharedContextService = serviceWith(new InvoiceRenderingContext());
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            Task task = new Task();
+            task.setId((long) i);
+            task.setTitle("Task " + i);
+            task.setBillable(true);
+            task.setHoursWorked(2);
+            task.setHourlyRate(50);
+            tasks.add(task);
+        }
+        UserProfile profile = new UserProfile();
+        profile.setLanguage("de");
+        profile.setCompanyName("ACME");
+        profile.setEmail("billing@example.com");
+        profile.setCurrency("EUR");
+        invoice = new InvoiceService.PreparedInvoice(tasks, profile, "Client", "benchmark");
+        issuedAt = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public byte[] sharedContext() throws Exception {
+        return render(sharedContextService);
+    }
+
+    @Benchmark
+    public byte[] contextPerInvoice() throws Exception {
+        return render(serviceWith(new InvoiceRenderingContext()));
+    }
+
+    private byte[] render(InvoiceService service) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.renderInvoice(invoice, 1, issuedAt, out);
+        return out.toByteArray();
+    }
+
+    // Rendering needs only the context; nothing here is cached, numbered or archived
+    private static InvoiceService serviceWith(InvoiceRenderingContext renderingContext) {
+        return new InvoiceService(null, null, renderingContext, null, null, null, null, null, null);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoiceRenderingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
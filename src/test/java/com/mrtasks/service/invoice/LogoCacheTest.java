@@ -0,0 +1,143 @@
+package com.mrtasks.service.invoice;
+
+import com.lowagie.text.Image;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogoCacheTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicReference<byte[]> logo = new AtomicReference<>();
+    private LogoCache logoCache;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        logo.set(png(800, 400));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/logo.png", exchange -> respond(exchange, logo.get()));
+        server.createContext("/huge.png", exchange -> respond(exchange, new byte[3 * 1024 * 1024]));
+        server.createContext("/slow.png", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, logo.get());
+        });
+        server.createContext("/trickle.png", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = logo.get();
+            try (exchange) {
+                exchange.sendResponseHeaders(200, body.length);
+                // Headers at once, then a byte at a time
+                for (byte b : body) {
+                    exchange.getResponseBody().write(b);
+                    exchange.getResponseBody().flush();
+                    Thread.sleep(50);
+                }
+            } catch (IOException e) {
+                // The client gave up
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        logoCache = new LogoCache(HttpClient.newHttpClient(), Duration.ofMillis(300));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void fetchesOnceAndScalesToTheLogoBox() {
+        Optional<Image> first = logoCache.getLogo(baseUrl + "/logo.png");
+        Optional<Image> second = logoCache.getLogo(baseUrl + "/logo.png");
+
+        assertThat(first).isPresent();
+        assertThat(second).isPresent();
+        assertThat(requests.get()).isEqualTo(1);
+        // Stored at twice the box, shown within it
+        assertThat(first.get().getWidth()).isEqualTo(LogoCache.LOGO_BOX * 2);
+        assertThat(first.get().getScaledWidth()).isEqualTo(LogoCache.LOGO_BOX);
+        assertThat(first.get().getScaledHeight()).isEqualTo(LogoCache.LOGO_BOX / 2);
+        // Image carries layout state, so every document gets its own instance
+        assertThat(first.get()).isNotSameAs(second.get());
+    }
+
+    @Test
+    void rejectsLogosOverTheSizeLimitAndRemembersTheFailure() {
+        assertThat(logoCache.getLogo(baseUrl + "/huge.png")).isEmpty();
+        assertThat(logoCache.getLogo(baseUrl + "/huge.png")).isEmpty();
+        assertThat(requests.get()).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpOnSlowHosts() {
+        long start = System.nanoTime();
+
+        assertThat(logoCache.getLogo(baseUrl + "/slow.png")).isEmpty();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void givesUpOnHostsThatTrickleTheBody() {
+        long start = System.nanoTime();
+
+        assertThat(logoCache.getLogo(baseUrl + "/trickle.png")).isEmpty();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void evictedUrlIsFetchedAgain() {
+        assertThat(logoCache.getLogo(baseUrl + "/logo.png")).get().extracting(Image::getScaledHeight).isEqualTo(LogoCache.LOGO_BOX / 2);
+
+        logo.set(png(400, 400));
+        logoCache.evict(baseUrl + "/logo.png");
+
+        assertThat(logoCache.getLogo(baseUrl + "/logo.png")).get().extracting(Image::getScaledHeight).isEqualTo(LogoCache.LOGO_BOX);
+        assertThat(requests.get()).isEqualTo(2);
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+            // The client gave up (timeout or size limit)
+        }
+    }
+
+    private static byte[] png(int width, int height) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
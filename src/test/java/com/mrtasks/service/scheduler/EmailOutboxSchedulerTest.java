@@ -0,0 +1,226 @@
+package com.mrtasks.service.scheduler;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.mrtasks.MessageConfig;
+import com.mrtasks.model.EmailOutbox;
+import com.mrtasks.repository.EmailOutboxRepository;
+import com.mrtasks.service.EmailService;
+import com.mrtasks.service.auth.CurrentUserCache;
+import com.mrtasks.service.mail.EmailOutboxMetrics;
+import com.mrtasks.service.mail.EmailTemplates;
+import com.mrtasks.service.mail.SmtpTransportPool;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.mail.MailSenderAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ImportAutoConfiguration(MailSenderAutoConfiguration.class)
+@Import({MessageConfig.class, EmailService.class, EmailTemplates.class, SmtpTransportPool.class, EmailOutboxMetrics.class,
+        EmailOutboxScheduler.class, CurrentUserCache.class, EmailOutboxSchedulerTest.Metrics.class})
+@TestPropertySource(properties = {
+        "spring.mail.host=localhost",
+        "spring.mail.port=3025",
+        "spring.mail.username=mrtasks",
+        "spring.mail.password=secret",
+        "spring.mail.properties.mail.smtp.starttls.enable=false",
+        "spring.mail.properties.mail.smtp.starttls.required=false"
+})
+class EmailOutboxSchedulerTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withUser("mrtasks", "secret"));
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    // Nothing runs on its schedule; the tests poll the outbox themselves
+    @MockBean
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private EmailOutboxScheduler scheduler;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @BeforeEach
+    void clearOutbox() {
+        emailOutboxRepository.deleteAll();
+    }
+
+    @Test
+    void queuedEmailIsDeliveredAndMarkedSent() throws Exception {
+        queueInvoice("client@example.com", 1L);
+
+        EmailOutbox queued = single();
+        assertThat(queued.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(greenMail.getReceivedMessages()).isEmpty();
+
+        scheduler.deliverDueEmails();
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        MimeMessage received = greenMail.getReceivedMessages()[0];
+        assertThat(received.getAllRecipients()[0].toString()).isEqualTo("client@example.com");
+        assertThat(received.getContentType()).startsWith("multipart/mixed");
+        EmailOutbox sent = await(queued.getId(), email -> email.getStatus() == EmailOutbox.Status.SENT);
+        assertThat(sent.getAttempts()).isEqualTo(1);
+        assertThat(sent.getSentAt()).isNotNull();
+        assertThat(sent.getAttachment()).isNull();
+    }
+
+    @Test
+    void repeatedInvoiceWithinWindowIsReportedAndNotQueued() {
+        assertThat(emailService.isInvoiceEmailQueued("client@example.com", "ACME", "en", List.of(3L, 1L))).isFalse();
+
+        assertThat(emailService.sendInvoiceEmail("client@example.com", new byte[]{1}, "ACME", "en", "me@example.com", List.of(3L, 1L))).isTrue();
+
+        // Same tasks in another order, and a differently rendered PDF
+        assertThat(emailService.isInvoiceEmailQueued("client@example.com", "ACME", "en", List.of(1L, 3L))).isTrue();
+        assertThat(emailService.sendInvoiceEmail("client@example.com", new byte[]{2}, "ACME", "en", "me@example.com", List.of(1L, 3L))).isFalse();
+        assertThat(emailOutboxRepository.count()).isEqualTo(1);
+
+        // Another recipient or other tasks are separate emails
+        assertThat(emailService.sendInvoiceEmail("other@example.com", new byte[]{1}, "ACME", "en", "me@example.com", List.of(1L, 3L))).isTrue();
+        assertThat(emailService.sendInvoiceEmail("client@example.com", new byte[]{1}, "ACME", "en", "me@example.com", List.of(1L))).isTrue();
+        assertThat(emailOutboxRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void concurrentSendsOfTheSameInvoiceQueueItOnce() throws Exception {
+        ExecutorService senders = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> sends = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                sends.add(senders.submit(() -> {
+                    start.await();
+                    return emailService.sendInvoiceEmail("client@example.com", new byte[]{1}, "ACME", "en", "me@example.com", List.of(1L, 2L));
+                }));
+            }
+            start.countDown();
+
+            int queued = 0;
+            for (Future<Boolean> send : sends) {
+                queued += send.get() ? 1 : 0;
+            }
+            assertThat(queued).isEqualTo(1);
+            assertThat(emailOutboxRepository.count()).isEqualTo(1);
+        } finally {
+            senders.shutdownNow();
+        }
+    }
+
+    @Test
+    void claimLeasesDueEmailsOnce() {
+        queueInvoice("client@example.com", 1L);
+        Long id = single().getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        assertThat(emailOutboxRepository.claimDue(now, now.plusMinutes(5), 10)).containsExactly(id);
+        assertThat(emailOutboxRepository.claimDue(now, now.plusMinutes(5), 10)).isEmpty();
+
+        EmailOutbox leased = emailOutboxRepository.findById(id).orElseThrow();
+        assertThat(leased.getStatus()).isEqualTo(EmailOutbox.Status.SENDING);
+        assertThat(leased.getAttempts()).isEqualTo(1);
+
+        // A lease that ran out, because its sender died, is claimed again
+        assertThat(emailOutboxRepository.claimDue(now.plusMinutes(6), now.plusMinutes(11), 10)).containsExactly(id);
+    }
+
+    @Test
+    void failedDeliveryIsRetriedWithBackoff() throws Exception {
+        greenMail.stop();
+        queueInvoice("client@example.com", 1L);
+        Long id = single().getId();
+
+        scheduler.deliverDueEmails();
+
+        EmailOutbox failed = await(id, email -> email.getLastError() != null);
+        assertThat(failed.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        assertThat(emailOutboxRepository.claimDue(now, now.plusMinutes(5), 10)).isEmpty();
+
+        // Once the retry is due and the server is back, the next poll delivers it
+        emailOutboxRepository.markFailedAttempt(id, EmailOutbox.Status.PENDING, now.minusSeconds(1), failed.getLastError());
+        greenMail.start();
+        scheduler.deliverDueEmails();
+
+        assertThat(greenMail.waitForIncomingEmail(5000, 1)).isTrue();
+        EmailOutbox sent = await(id, email -> email.getStatus() == EmailOutbox.Status.SENT);
+        assertThat(sent.getAttempts()).isEqualTo(2);
+        assertThat(sent.getLastError()).isNull();
+    }
+
+    private void queueInvoice(String recipient, Long... taskIds) {
+        assertThat(emailService.sendInvoiceEmail(recipient, new byte[]{1, 2, 3}, "ACME", "en", "me@example.com", List.of(taskIds))).isTrue();
+    }
+
+    private EmailOutbox single() {
+        List<EmailOutbox> emails = emailOutboxRepository.findAll();
+        assertThat(emails).hasSize(1);
+        return emails.getFirst();
+    }
+
+    // Deliveries run on the scheduler's sender threads, so wait for their outcome to be recorded
+    private EmailOutbox await(Long id, Predicate<EmailOutbox> outcome) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        EmailOutbox email = emailOutboxRepository.findById(id).orElseThrow();
+        while (!outcome.test(email) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            email = emailOutboxRepository.findById(id).orElseThrow();
+        }
+        assertThat(email).matches(outcome);
+        return email;
+    }
+}